@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.network.Connections;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import com.velocitypowered.proxy.protocol.netty.MinecraftDecoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftEncoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftVarintFrameDecoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftVarintLengthEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.List;
+import net.elytrium.commons.utils.reflection.ReflectionException;
+import net.elytrium.fastmotd.holder.MOTDSnapshot;
+import net.elytrium.fastmotd.utils.GenerationContext;
+import net.elytrium.fastmotd.utils.MOTDGenerator;
+import org.slf4j.helpers.NOPLogger;
+import sun.misc.Unsafe;
+
+/**
+ * Builds the plugin state which is normally created by Velocity and the reload, without starting a proxy.
+ */
+public final class BenchmarkSupport {
+
+  private static final Unsafe UNSAFE;
+  private static final Field SNAPSHOT;
+
+  static {
+    try {
+      Field unsafe = Unsafe.class.getDeclaredField("theUnsafe");
+      unsafe.setAccessible(true);
+      UNSAFE = (Unsafe) unsafe.get(null);
+
+      SNAPSHOT = FastMOTD.class.getDeclaredField("snapshot");
+      SNAPSHOT.setAccessible(true);
+    } catch (NoSuchFieldException | IllegalAccessException e) {
+      throw new ReflectionException(e);
+    }
+  }
+
+  private BenchmarkSupport() {
+
+  }
+
+  /**
+   * Creates the plugin with a server which has not been constructed, it is only passed around by the handlers.
+   */
+  public static FastMOTD createPlugin() {
+    try {
+      VelocityServer server = (VelocityServer) UNSAFE.allocateInstance(VelocityServer.class);
+      return new FastMOTD(NOPLogger.NOP_LOGGER, server, null, Path.of("fastmotd-benchmark"));
+    } catch (InstantiationException e) {
+      throw new ReflectionException(e);
+    }
+  }
+
+  public static void publish(FastMOTD plugin, MOTDSnapshot snapshot) {
+    try {
+      SNAPSHOT.set(plugin, snapshot);
+    } catch (IllegalAccessException e) {
+      throw new ReflectionException(e);
+    }
+  }
+
+  /**
+   * Creates a generator with a single holder, as it is done by the reload. EventLoopRegistry should be initialized before.
+   */
+  public static MOTDGenerator createGenerator(FastMOTD plugin, String description) {
+    GenerationContext context = new GenerationContext(plugin, Settings.IMP.SERIALIZER.getSerializer(), null);
+    MOTDGenerator generator = new MOTDGenerator("FastMOTD", List.of(description), List.of(), List.of("First line", "Second line"));
+    generator.generate(context).join();
+    generator.update(1000, 100);
+    return generator;
+  }
+
+  /**
+   * Sets up the pipeline of a new connection as Velocity does it, the session handler is left to the caller.
+   */
+  public static MinecraftConnection createConnection(FastMOTD plugin, EmbeddedChannel channel) {
+    MinecraftConnection connection = new MinecraftConnection(channel, plugin.getServer());
+    channel.pipeline()
+        .addLast(Connections.FRAME_DECODER, new MinecraftVarintFrameDecoder(ProtocolUtils.Direction.SERVERBOUND))
+        .addLast(Connections.FRAME_ENCODER, MinecraftVarintLengthEncoder.INSTANCE)
+        .addLast(Connections.MINECRAFT_DECODER, new MinecraftDecoder(ProtocolUtils.Direction.SERVERBOUND))
+        .addLast(Connections.MINECRAFT_ENCODER, new MinecraftEncoder(ProtocolUtils.Direction.CLIENTBOUND))
+        .addLast(Connections.HANDLER, connection);
+    return connection;
+  }
+
+  /**
+   * Returns the amount of bytes written to the channel and releases them.
+   */
+  public static int drainOutbound(EmbeddedChannel channel) {
+    int written = 0;
+    ByteBuf response;
+    while ((response = channel.readOutbound()) != null) {
+      written += response.readableBytes();
+      response.release();
+    }
+
+    return written;
+  }
+
+  /**
+   * Returns an 8 KiB favicon, about the size of a compressed 64x64 PNG.
+   */
+  public static String createFavicon() {
+    return "data:image/png;base64," + "A".repeat(8192);
+  }
+
+  /**
+   * Returns handshake, status request and ping frames as a pipelining client sends them, in one buffer.
+   */
+  public static ByteBuf createStatusExchange(ProtocolVersion version, String hostname, int port) {
+    ByteBuf handshake = Unpooled.buffer();
+    ProtocolUtils.writeVarInt(handshake, 0x00);
+    ProtocolUtils.writeVarInt(handshake, version.getProtocol());
+    ProtocolUtils.writeString(handshake, hostname);
+    handshake.writeShort(port);
+    ProtocolUtils.writeVarInt(handshake, 1);
+
+    ByteBuf exchange = Unpooled.directBuffer();
+    ProtocolUtils.writeVarInt(exchange, handshake.readableBytes());
+    exchange.writeBytes(handshake);
+    handshake.release();
+
+    exchange.writeByte(1);
+    exchange.writeByte(0x00);
+
+    exchange.writeByte(9);
+    exchange.writeByte(0x01);
+    exchange.writeLong(System.currentTimeMillis());
+    return exchange;
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd;
+
+import io.netty.channel.DefaultEventLoop;
+import net.elytrium.fastmotd.utils.EventLoopRegistry;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The worker event loop of the benchmarks. Per-loop buffers are only used from the registered loops,
+ * so the measured code runs there in batches of {@link #BATCH} operations, which hides the cost of the handoff.
+ * Benchmarks using it should be annotated with {@code @OperationsPerInvocation(EventLoopState.BATCH)}.
+ */
+@State(Scope.Benchmark)
+public class EventLoopState {
+
+  public static final int BATCH = 1024;
+
+  private DefaultEventLoop loop;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    this.loop = new DefaultEventLoop();
+    EventLoopRegistry.init(this.loop);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.loop.shutdownGracefully().syncUninterruptibly();
+  }
+
+  public void run(Runnable task) {
+    this.loop.submit(task).syncUninterruptibly();
+  }
+}
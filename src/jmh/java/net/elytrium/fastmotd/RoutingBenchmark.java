@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.elytrium.fastmotd.holder.MOTDSnapshot;
+import net.elytrium.fastmotd.utils.AddressMatcher;
+import net.elytrium.fastmotd.utils.MOTDGenerator;
+import net.elytrium.fastmotd.utils.MOTDRoutingTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link FastMOTD#getNext} with every supported protocol routed and the given amount of exact and wildcard domains.
+ * A third of the pings use an exact domain, a third a wildcard one and the rest miss and are routed by the protocol.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RoutingBenchmark {
+
+  private static final int GENERATORS = 8;
+  private static final int PORT = 25565;
+
+  @Param({"0", "100", "10000"})
+  public int domains;
+
+  private FastMOTD plugin;
+  private MOTDGenerator[] generators;
+  private ProtocolVersion[] versions;
+  private String[] hostnames;
+  private ByteBuf[] rawHostnames;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup(EventLoopState loop) {
+    this.plugin = BenchmarkSupport.createPlugin();
+    this.generators = new MOTDGenerator[GENERATORS];
+    for (int i = 0; i < GENERATORS; i++) {
+      this.generators[i] = BenchmarkSupport.createGenerator(this.plugin, "<red>FastMOTD</red>{NL} -> Generator " + i);
+    }
+
+    this.versions = Arrays.stream(ProtocolVersion.values())
+        .filter(version -> !version.isUnknown() && !version.isLegacy())
+        .toArray(ProtocolVersion[]::new);
+
+    MOTDRoutingTable.Builder routes = MOTDRoutingTable.builder(this.generators[0]);
+    int last = -1;
+    for (ProtocolVersion version : this.versions) {
+      if (version.getProtocol() > last) {
+        last = version.getProtocol();
+        routes.route(last, last, this.generators[version.ordinal() % GENERATORS]);
+      }
+    }
+
+    this.hostnames = new String[Math.max(this.domains, 1) * 3];
+    for (int i = 0; i < this.domains; i++) {
+      routes.domain("play" + i + ".example.net", this.generators[i % GENERATORS]);
+      routes.domain("*.network" + i + ".example.org:" + PORT, this.generators[(i + 1) % GENERATORS]);
+    }
+
+    for (int i = 0; i < this.hostnames.length / 3; i++) {
+      this.hostnames[i * 3] = "play" + i + ".example.net";
+      this.hostnames[i * 3 + 1] = "lobby.network" + i + ".example.org";
+      this.hostnames[i * 3 + 2] = "unknown" + i + ".example.com";
+    }
+
+    this.rawHostnames = Arrays.stream(this.hostnames)
+        .map(hostname -> Unpooled.copiedBuffer(hostname, StandardCharsets.UTF_8))
+        .toArray(ByteBuf[]::new);
+
+    MOTDRoutingTable table = routes.build();
+    BenchmarkSupport.publish(this.plugin, new MOTDSnapshot(table, table, this.generators[0], null, AddressMatcher.compile(List.of()), false));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown(EventLoopState loop) {
+    loop.run(() -> Arrays.stream(this.generators).forEach(MOTDGenerator::dispose));
+    Arrays.stream(this.rawHostnames).forEach(ByteBuf::release);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EventLoopState.BATCH)
+  public void getNext(EventLoopState loop, Blackhole blackhole) {
+    loop.run(() -> {
+      for (int i = 0; i < EventLoopState.BATCH; i++) {
+        int index = this.next++ & Integer.MAX_VALUE;
+        ProtocolVersion version = this.versions[index % this.versions.length];
+        ByteBuf buf = this.plugin.getNext(version, this.hostnames[index % this.hostnames.length], PORT);
+        blackhole.consume(buf.readableBytes());
+        buf.release();
+      }
+    });
+  }
+
+  /**
+   * Same as {@link #getNext}, with the hostname left in the handshake buffer, as the raw status handler does.
+   */
+  @Benchmark
+  @OperationsPerInvocation(EventLoopState.BATCH)
+  public void getNextRaw(EventLoopState loop, Blackhole blackhole) {
+    loop.run(() -> {
+      for (int i = 0; i < EventLoopState.BATCH; i++) {
+        int index = this.next++ & Integer.MAX_VALUE;
+        ProtocolVersion version = this.versions[index % this.versions.length];
+        ByteBuf buf = this.plugin.getNext(version, this.rawHostnames[index % this.rawHostnames.length], PORT);
+        blackhole.consume(buf.readableBytes());
+        buf.release();
+      }
+    });
+  }
+}
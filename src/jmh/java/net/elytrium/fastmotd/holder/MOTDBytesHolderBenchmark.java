@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.holder;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import io.netty.buffer.ByteBuf;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.elytrium.fastmotd.BenchmarkSupport;
+import net.elytrium.fastmotd.EventLoopState;
+import net.elytrium.fastmotd.Settings;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Response of a single holder, as it is taken for every status request and rebuilt on every online change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MOTDBytesHolderBenchmark {
+
+  @Param({"false", "true"})
+  public boolean precompute;
+
+  @Param({"false", "true"})
+  public boolean replaceProtocol;
+
+  private MOTDBytesHolder holder;
+  private ByteBuf faviconSegment;
+  private int online;
+
+  @Setup(Level.Trial)
+  public void setup(EventLoopState loop) {
+    Settings.IMP.MAIN.PRECOMPUTE_PROTOCOL_RESPONSES = this.precompute;
+
+    String favicon = BenchmarkSupport.createFavicon();
+    this.faviconSegment = MOTDBytesHolder.createFaviconSegment(favicon);
+    this.holder = new MOTDBytesHolder(ProtocolUtils.getJsonChatSerializer(ProtocolVersion.MINECRAFT_1_16),
+        ProtocolVersion.MINECRAFT_1_16, ProtocolVersion.MAXIMUM_VERSION, "FastMOTD",
+        Component.text("FastMOTD", NamedTextColor.RED).appendNewline().append(Component.text(" -> Really fast.")),
+        favicon, this.faviconSegment, List.of("First line", "Second line"));
+    this.holder.replaceOnline(1000, 100);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown(EventLoopState loop) {
+    loop.run(() -> {
+      this.holder.dispose();
+      this.faviconSegment.release();
+    });
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EventLoopState.BATCH)
+  public void getByteBuf(EventLoopState loop, Blackhole blackhole) {
+    loop.run(() -> {
+      for (int i = 0; i < EventLoopState.BATCH; i++) {
+        ByteBuf buf = this.holder.getByteBuf(ProtocolVersion.MAXIMUM_VERSION, this.replaceProtocol);
+        blackhole.consume(buf.readableBytes());
+        buf.release();
+      }
+    });
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EventLoopState.BATCH)
+  public void replaceOnline(EventLoopState loop) {
+    loop.run(() -> {
+      for (int i = 0; i < EventLoopState.BATCH; i++) {
+        this.holder.replaceOnline(1000, this.online++ & 0x3FF);
+      }
+    });
+  }
+}
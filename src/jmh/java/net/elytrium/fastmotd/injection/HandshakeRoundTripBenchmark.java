@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.injection;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.connection.client.HandshakeSessionHandler;
+import com.velocitypowered.proxy.protocol.StateRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.elytrium.fastmotd.BenchmarkSupport;
+import net.elytrium.fastmotd.EventLoopState;
+import net.elytrium.fastmotd.FastMOTD;
+import net.elytrium.fastmotd.Settings;
+import net.elytrium.fastmotd.holder.MOTDSnapshot;
+import net.elytrium.fastmotd.utils.AddressMatcher;
+import net.elytrium.fastmotd.utils.MOTDGenerator;
+import net.elytrium.fastmotd.utils.MOTDRoutingTable;
+import net.elytrium.fastmotd.utils.PingMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Whole status exchange of a pipelining client through Velocity's pipeline and {@link HandshakeSessionHandlerHook}:
+ * the connection is set up as Velocity does it, then handshake, status request and ping arrive in one read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HandshakeRoundTripBenchmark {
+
+  @Param({"false", "true"})
+  public boolean directWrite;
+
+  @Param({"false", "true"})
+  public boolean precompute;
+
+  private FastMOTD plugin;
+  private MOTDGenerator generator;
+  private HandshakeSessionHandlerHook.Factory factory;
+  private ByteBuf exchange;
+
+  @Setup(Level.Trial)
+  public void setup(EventLoopState loop) {
+    Settings.IMP.MAIN.DIRECT_WRITE = this.directWrite;
+    Settings.IMP.MAIN.PRECOMPUTE_PROTOCOL_RESPONSES = this.precompute;
+    Settings.IMP.MAIN.LOG_PINGS = false;
+
+    this.plugin = BenchmarkSupport.createPlugin();
+    this.generator = BenchmarkSupport.createGenerator(this.plugin, "<red>FastMOTD</red>{NL} -> Really fast.");
+    MOTDRoutingTable routes = MOTDRoutingTable.builder(this.generator).build();
+    BenchmarkSupport.publish(this.plugin, new MOTDSnapshot(routes, routes, this.generator, null, AddressMatcher.compile(List.of()), false));
+    this.factory = HandshakeSessionHandlerHook.factory();
+    this.exchange = BenchmarkSupport.createStatusExchange(ProtocolVersion.MAXIMUM_VERSION, "play.example.net", 25565);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown(EventLoopState loop) {
+    loop.run(this.generator::dispose);
+    this.exchange.release();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EventLoopState.BATCH)
+  public void statusExchange(EventLoopState loop, Blackhole blackhole) {
+    loop.run(() -> {
+      for (int i = 0; i < EventLoopState.BATCH; i++) {
+        blackhole.consume(this.exchange());
+      }
+    });
+  }
+
+  private int exchange() {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    MinecraftConnection connection = BenchmarkSupport.createConnection(this.plugin, channel);
+    connection.setActiveSessionHandler(StateRegistry.HANDSHAKE, this.factory.create(this.plugin, connection, channel,
+        new HandshakeSessionHandler(connection, this.plugin.getServer()), PingMetrics.NOT_SAMPLED));
+
+    channel.writeInbound(this.exchange.retainedDuplicate());
+    int written = BenchmarkSupport.drainOutbound(channel);
+    channel.finishAndReleaseAll();
+    return written;
+  }
+}
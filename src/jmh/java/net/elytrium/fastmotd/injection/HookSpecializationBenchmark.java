@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.injection;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.connection.client.HandshakeSessionHandler;
+import com.velocitypowered.proxy.protocol.StateRegistry;
+import com.velocitypowered.proxy.protocol.packet.HandshakePacket;
+import com.velocitypowered.proxy.protocol.packet.StatusPingPacket;
+import com.velocitypowered.proxy.protocol.packet.StatusRequestPacket;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.elytrium.fastmotd.BenchmarkSupport;
+import net.elytrium.fastmotd.EventLoopState;
+import net.elytrium.fastmotd.FastMOTD;
+import net.elytrium.fastmotd.Settings;
+import net.elytrium.fastmotd.holder.MOTDSnapshot;
+import net.elytrium.fastmotd.utils.AddressMatcher;
+import net.elytrium.fastmotd.utils.MOTDGenerator;
+import net.elytrium.fastmotd.utils.MOTDRoutingTable;
+import net.elytrium.fastmotd.utils.PingMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Status exchange handled by the hooks of {@link HandshakeSessionHandlerHook#factory()} for every combination
+ * of the specialized settings, against the generic hook which reads them on every packet. The packets are passed
+ * to the hook already decoded and the channels are set up before the measurement, so the time goes to the hook
+ * and its writes, the whole exchange with the frame decoding is measured by {@link HandshakeRoundTripBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HookSpecializationBenchmark {
+
+  @Param({"true", "false"})
+  public boolean specialized;
+
+  @Param({"true", "false"})
+  public boolean directWrite;
+
+  @Param({"true", "false"})
+  public boolean allowImproperPings;
+
+  private FastMOTD plugin;
+  private MOTDGenerator generator;
+  private HandshakeSessionHandlerHook.Factory factory;
+  private HandshakePacket handshake;
+  private StatusPingPacket ping;
+  private final EmbeddedChannel[] channels = new EmbeddedChannel[EventLoopState.BATCH];
+  private final MinecraftConnection[] connections = new MinecraftConnection[EventLoopState.BATCH];
+  private final HandshakeSessionHandler[] originals = new HandshakeSessionHandler[EventLoopState.BATCH];
+
+  @Setup(Level.Trial)
+  public void setup(EventLoopState loop) {
+    Settings.IMP.MAIN.DIRECT_WRITE = this.directWrite;
+    Settings.IMP.MAIN.ALLOW_IMPROPER_PINGS = this.allowImproperPings;
+    Settings.IMP.MAIN.LOG_PINGS = false;
+    // A timeout would be inserted into the shared wheel for every exchange, which costs more than the measured branches
+    Settings.IMP.MAIN.STATUS_TIMEOUT = 0;
+
+    this.plugin = BenchmarkSupport.createPlugin();
+    this.generator = BenchmarkSupport.createGenerator(this.plugin, "<red>FastMOTD</red>{NL} -> Really fast.");
+    MOTDRoutingTable routes = MOTDRoutingTable.builder(this.generator).build();
+    BenchmarkSupport.publish(this.plugin, new MOTDSnapshot(routes, routes, this.generator, null, AddressMatcher.compile(List.of()), false));
+    this.factory = this.specialized ? HandshakeSessionHandlerHook.factory() : HandshakeSessionHandlerHook.genericFactory();
+
+    this.handshake = new HandshakePacket();
+    this.handshake.setProtocolVersion(ProtocolVersion.MAXIMUM_VERSION);
+    this.handshake.setServerAddress("play.example.net");
+    this.handshake.setPort(25565);
+    this.handshake.setNextStatus(StateRegistry.STATUS_ID);
+    this.ping = new StatusPingPacket();
+  }
+
+  @Setup(Level.Invocation)
+  public void createChannels() {
+    for (int i = 0; i < EventLoopState.BATCH; i++) {
+      this.channels[i] = new EmbeddedChannel();
+      this.connections[i] = BenchmarkSupport.createConnection(this.plugin, this.channels[i]);
+      this.originals[i] = new HandshakeSessionHandler(this.connections[i], this.plugin.getServer());
+    }
+  }
+
+  @TearDown(Level.Invocation)
+  public void releaseChannels(Blackhole blackhole) {
+    for (EmbeddedChannel channel : this.channels) {
+      blackhole.consume(BenchmarkSupport.drainOutbound(channel));
+      channel.finishAndReleaseAll();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown(EventLoopState loop) {
+    loop.run(this.generator::dispose);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EventLoopState.BATCH)
+  public void statusExchange(EventLoopState loop, Blackhole blackhole) {
+    loop.run(() -> {
+      for (int i = 0; i < EventLoopState.BATCH; i++) {
+        blackhole.consume(this.exchange(i));
+      }
+    });
+  }
+
+  private HandshakeSessionHandlerHook exchange(int index) {
+    MinecraftConnection connection = this.connections[index];
+    HandshakeSessionHandlerHook hook = this.factory.create(this.plugin, connection, this.channels[index], this.originals[index],
+        PingMetrics.NOT_SAMPLED);
+    connection.setActiveSessionHandler(StateRegistry.HANDSHAKE, hook);
+
+    hook.handle(this.handshake);
+    hook.handleGeneric(StatusRequestPacket.INSTANCE);
+    hook.handleGeneric(this.ping);
+    hook.readCompleted();
+    return hook;
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.TimeUnit;
+import net.elytrium.fastmotd.EventLoopState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Creation of the per-loop copies of a response, which replaced the thread local copies.
+ * A set is created for every holder on reload, its copy is made by the first ping on each loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EventLoopByteBufSetBenchmark {
+
+  @Param({"1024", "16384"})
+  public int size;
+
+  private ByteBuf source;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    this.source = Unpooled.directBuffer(this.size).writeZero(this.size);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.source.release();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EventLoopState.BATCH)
+  public void createAndGet(EventLoopState loop, Blackhole blackhole) {
+    loop.run(() -> {
+      for (int i = 0; i < EventLoopState.BATCH; i++) {
+        EventLoopByteBufSet set = new EventLoopByteBufSet(this.source.retainedDuplicate());
+        ByteBuf buf = set.get();
+        blackhole.consume(buf.readableBytes());
+        buf.release();
+        set.release();
+      }
+    });
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.loadtest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side of a single exchange, it reports the outcome to the generator exactly once.
+ */
+public class PingClientHandler extends ByteToMessageDecoder {
+
+  private static final int STATUS_RESPONSE_ID = 0x00;
+  private static final int STATUS_PONG_ID = 0x01;
+  private static final int LEGACY_KICK_ID = 0xFF;
+
+  private final PingLoadGenerator generator;
+  private final long start;
+  private boolean responded;
+  private boolean done;
+  private ScheduledFuture<?> timeout;
+
+  public PingClientHandler(PingLoadGenerator generator, long start) {
+    this.generator = generator;
+    this.start = start;
+  }
+
+  @Override
+  public void channelActive(ChannelHandlerContext ctx) throws Exception {
+    this.timeout = ctx.executor().schedule(() -> this.finish(ctx, PingLoadGenerator.Outcome.TIMEOUT),
+        this.generator.getTimeout(), TimeUnit.MILLISECONDS);
+    ctx.writeAndFlush(this.generator.getRequest().retainedDuplicate(), ctx.voidPromise());
+    super.channelActive(ctx);
+  }
+
+  @Override
+  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+    switch (this.generator.getMode()) {
+      case STATUS, PIPELINED -> this.decodeFrames(ctx, in);
+      case LEGACY -> {
+        if (!this.responded && in.getUnsignedByte(in.readerIndex()) != LEGACY_KICK_ID) {
+          this.finish(ctx, PingLoadGenerator.Outcome.PROTOCOL);
+          return;
+        }
+
+        this.responded = true;
+        in.skipBytes(in.readableBytes());
+      }
+      default -> in.skipBytes(in.readableBytes());
+    }
+  }
+
+  private void decodeFrames(ChannelHandlerContext ctx, ByteBuf in) {
+    while (!this.done && in.isReadable()) {
+      int start = in.readerIndex();
+      int length = readVarInt(in);
+      if (length == -2) {
+        this.finish(ctx, PingLoadGenerator.Outcome.PROTOCOL);
+        return;
+      }
+
+      if (length == -1 || in.readableBytes() < length) {
+        in.readerIndex(start);
+        return;
+      }
+
+      int packetId = length == 0 ? -1 : in.getUnsignedByte(in.readerIndex());
+      in.skipBytes(length);
+      if (packetId == STATUS_RESPONSE_ID && !this.responded) {
+        this.responded = true;
+        if (this.generator.getMode() == PingMode.STATUS) {
+          ctx.writeAndFlush(this.generator.getPing().retainedDuplicate(), ctx.voidPromise());
+        }
+      } else if (packetId == STATUS_PONG_ID && this.responded && length == 9) {
+        this.finish(ctx, PingLoadGenerator.Outcome.SUCCESS);
+      } else {
+        this.finish(ctx, PingLoadGenerator.Outcome.PROTOCOL);
+      }
+    }
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    super.channelInactive(ctx);
+    switch (this.generator.getMode()) {
+      case LEGACY -> {
+        if (this.responded) {
+          this.finish(ctx, PingLoadGenerator.Outcome.SUCCESS);
+        }
+      }
+      case NULLPING -> this.finish(ctx, PingLoadGenerator.Outcome.SUCCESS);
+      default -> {
+        // The exchange is not finished, otherwise it would have been reported already
+      }
+    }
+
+    this.finish(ctx, PingLoadGenerator.Outcome.CLOSED);
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+    this.finish(ctx, PingLoadGenerator.Outcome.EXCEPTION);
+  }
+
+  private void finish(ChannelHandlerContext ctx, PingLoadGenerator.Outcome outcome) {
+    if (this.done) {
+      return;
+    }
+
+    this.done = true;
+    if (this.timeout != null) {
+      this.timeout.cancel(false);
+    }
+
+    ctx.close();
+    this.generator.report(outcome, System.nanoTime() - this.start);
+  }
+
+  // Returns -1 if the VarInt is not fully received yet, -2 if it is too long
+  private static int readVarInt(ByteBuf in) {
+    int result = 0;
+    for (int i = 0; i < 5; i++) {
+      if (!in.isReadable()) {
+        return -1;
+      }
+
+      byte read = in.readByte();
+      result |= (read & 0x7F) << (i * 7);
+      if ((read & 0x80) == 0) {
+        return result;
+      }
+    }
+
+    return -2;
+  }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.loadtest;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollIoHandler;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioIoHandler;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.lang.reflect.RecordComponent;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Closed-loop ping load generator: every client runs one exchange and is replaced by a new connection when it is done,
+ * so the amount of connections in flight stays constant. Latency is measured from the connection attempt to the end
+ * of the exchange, it includes the TCP handshake. As the load is closed-loop, the percentiles do not account
+ * for the exchanges which could not be started while the server was slow.
+ *
+ * <p>Arguments are --name=value pairs, see {@link Options#parse(String[])} for the defaults.
+ */
+public class PingLoadGenerator {
+
+  private final Options options;
+  private final EventLoopGroup group;
+  private final Bootstrap bootstrap;
+  private final InetSocketAddress[] addresses;
+  private final ByteBuf request;
+  private final ByteBuf ping;
+  private final Recorder latency = new Recorder(3);
+  private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger nextAddress = new AtomicInteger();
+  private volatile boolean running = true;
+
+  public PingLoadGenerator(Options options) {
+    this.options = options;
+    boolean epoll = switch (options.transport()) {
+      case "epoll" -> true;
+      case "nio" -> false;
+      default -> Epoll.isAvailable();
+    };
+
+    this.group = new MultiThreadIoEventLoopGroup(options.threads(), epoll ? EpollIoHandler.newFactory() : NioIoHandler.newFactory());
+    this.bootstrap = new Bootstrap()
+        .group(this.group)
+        .channel(epoll ? EpollSocketChannel.class : NioSocketChannel.class)
+        .option(ChannelOption.TCP_NODELAY, true)
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, options.timeout())
+        .handler(new ChannelInitializer<Channel>() {
+
+          @Override
+          protected void initChannel(Channel ch) {
+            ch.pipeline().addLast(new PingClientHandler(PingLoadGenerator.this, System.nanoTime()));
+          }
+        });
+
+    if (options.reset()) {
+      // The client closes last in most of the exchanges, RST keeps the ephemeral ports out of TIME_WAIT
+      this.bootstrap.option(ChannelOption.SO_LINGER, 0);
+    }
+
+    this.addresses = Arrays.stream(options.hosts().split(","))
+        .map(host -> new InetSocketAddress(host.trim(), options.port()))
+        .toArray(InetSocketAddress[]::new);
+    this.request = options.mode().createRequest(options.protocol(), options.hostname(), options.port());
+    this.ping = PingMode.createPing();
+    for (int i = 0; i < this.outcomes.length; i++) {
+      this.outcomes[i] = new LongAdder();
+    }
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    Options options = Options.parse(args);
+    System.out.printf(Locale.ROOT, "%s pings to %s:%d, %d connections in flight, %d threads, %ds warmup, %ds measurement%n",
+        options.mode(), options.hosts(), options.port(), options.connections(), options.threads(), options.warmup(), options.duration());
+    new PingLoadGenerator(options).run();
+  }
+
+  public void run() throws InterruptedException {
+    for (int i = 0; i < this.options.connections(); i++) {
+      this.connect();
+    }
+
+    long[] totals = new long[this.outcomes.length];
+    Histogram total = null;
+    Histogram interval = null;
+    long started = System.nanoTime();
+    long measured = 0;
+    for (int second = 1; second <= this.options.warmup() + this.options.duration(); second++) {
+      long next = started + TimeUnit.SECONDS.toNanos(second);
+      long now = System.nanoTime();
+      if (next > now) {
+        TimeUnit.NANOSECONDS.sleep(next - now);
+      }
+
+      long[] counts = new long[this.outcomes.length];
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] = this.outcomes[i].sumThenReset();
+      }
+
+      interval = this.latency.getIntervalHistogram(interval);
+      boolean warmup = second <= this.options.warmup();
+      System.out.println((warmup ? "warmup " : "") + format(second + "s", counts, interval, 1));
+      if (!warmup) {
+        for (int i = 0; i < counts.length; i++) {
+          totals[i] += counts[i];
+        }
+
+        if (total == null) {
+          total = interval.copy();
+        } else {
+          total.add(interval);
+        }
+
+        measured++;
+      }
+    }
+
+    this.running = false;
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.options.timeout());
+    while (this.inFlight.get() > 0 && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+
+    if (total != null) {
+      System.out.println(format("total", totals, total, measured));
+    }
+
+    this.group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    this.request.release();
+    this.ping.release();
+  }
+
+  private static String format(String label, long[] counts, Histogram histogram, long seconds) {
+    StringBuilder errors = new StringBuilder();
+    long errorCount = 0;
+    for (Outcome outcome : Outcome.values()) {
+      if (outcome != Outcome.SUCCESS) {
+        errorCount += counts[outcome.ordinal()];
+        errors.append(errors.isEmpty() ? "" : ", ").append(outcome.name().toLowerCase(Locale.ROOT)).append(' ').append(counts[outcome.ordinal()]);
+      }
+    }
+
+    return String.format(Locale.ROOT, "[%6s] %,d pings/s, p50 %.3f ms, p99 %.3f ms, p999 %.3f ms, errors %,d (%s)",
+        label, counts[Outcome.SUCCESS.ordinal()] / Math.max(seconds, 1),
+        millis(histogram, 50.0), millis(histogram, 99.0), millis(histogram, 99.9), errorCount, errors);
+  }
+
+  private static double millis(Histogram histogram, double percentile) {
+    return histogram.getValueAtPercentile(percentile) / 1_000_000.0;
+  }
+
+  private void connect() {
+    if (!this.running) {
+      return;
+    }
+
+    this.inFlight.incrementAndGet();
+    InetSocketAddress address = this.addresses[(this.nextAddress.getAndIncrement() & Integer.MAX_VALUE) % this.addresses.length];
+    ChannelFuture future = this.bootstrap.connect(address);
+    future.addListener(result -> {
+      if (!result.isSuccess()) {
+        this.outcomes[Outcome.CONNECT.ordinal()].increment();
+        this.inFlight.decrementAndGet();
+        // Do not spin while the server does not accept connections
+        this.group.schedule(this::connect, 10, TimeUnit.MILLISECONDS);
+      }
+    });
+  }
+
+  /**
+   * Called once per established connection, from its event loop.
+   */
+  void report(Outcome outcome, long nanos) {
+    this.outcomes[outcome.ordinal()].increment();
+    if (outcome == Outcome.SUCCESS) {
+      this.latency.recordValue(nanos);
+    }
+
+    this.inFlight.decrementAndGet();
+    this.connect();
+  }
+
+  PingMode getMode() {
+    return this.options.mode();
+  }
+
+  int getTimeout() {
+    return this.options.timeout();
+  }
+
+  ByteBuf getRequest() {
+    return this.request;
+  }
+
+  ByteBuf getPing() {
+    return this.ping;
+  }
+
+  public enum Outcome {
+
+    SUCCESS,
+    TIMEOUT,
+    CLOSED,
+    PROTOCOL,
+    EXCEPTION,
+    CONNECT
+  }
+
+  public record Options(String hosts, int port, String hostname, int protocol, PingMode mode, int connections, int threads,
+                        int warmup, int duration, int timeout, String transport, boolean reset) {
+
+    /**
+     * Hosts are comma-separated, with several loopback addresses (127.0.0.1,127.0.0.2,...) more ephemeral ports are available.
+     */
+    public static Options parse(String[] args) {
+      Map<String, String> values = new HashMap<>();
+      for (String arg : args) {
+        int separator = arg.indexOf('=');
+        if (!arg.startsWith("--") || separator == -1) {
+          throw new IllegalArgumentException("Arguments should be --name=value: " + arg);
+        }
+
+        values.put(arg.substring(2, separator), arg.substring(separator + 1));
+      }
+
+      Options options = new Options(
+          values.getOrDefault("hosts", "127.0.0.1"),
+          Integer.parseInt(values.getOrDefault("port", "25565")),
+          values.getOrDefault("hostname", "localhost"),
+          Integer.parseInt(values.getOrDefault("protocol", "769")),
+          PingMode.valueOf(values.getOrDefault("mode", "PIPELINED").toUpperCase(Locale.ROOT)),
+          Integer.parseInt(values.getOrDefault("connections", "1000")),
+          Integer.parseInt(values.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+          Integer.parseInt(values.getOrDefault("warmup", "5")),
+          Integer.parseInt(values.getOrDefault("duration", "30")),
+          Integer.parseInt(values.getOrDefault("timeout", "5000")),
+          values.getOrDefault("transport", "auto"),
+          Boolean.parseBoolean(values.getOrDefault("reset", "true"))
+      );
+
+      values.keySet().removeAll(Arrays.stream(Options.class.getRecordComponents()).map(RecordComponent::getName).toList());
+      if (!values.isEmpty()) {
+        throw new IllegalArgumentException("Unknown arguments: " + values.keySet());
+      }
+
+      return options;
+    }
+  }
+}
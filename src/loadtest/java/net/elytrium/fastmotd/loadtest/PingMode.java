@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.loadtest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+
+public enum PingMode {
+
+  /**
+   * Handshake and status request, the ping is sent after the response is received, as the vanilla client does.
+   */
+  STATUS,
+  /**
+   * Handshake, status request and ping in one write.
+   */
+  PIPELINED,
+  /**
+   * 1.6 legacy ping, the exchange ends when the server closes the connection after the kick packet.
+   */
+  LEGACY,
+  /**
+   * Handshake followed by a packet which is not valid in the status state, the server is expected to close the connection.
+   */
+  NULLPING;
+
+  private static final int STATUS_REQUEST_ID = 0x00;
+  private static final int STATUS_PING_ID = 0x01;
+  private static final int INVALID_ID = 0x7F;
+
+  /**
+   * Returns the bytes sent once the connection is established, they are written with retainedDuplicate().
+   */
+  public ByteBuf createRequest(int protocol, String hostname, int port) {
+    ByteBuf buf = Unpooled.directBuffer();
+    switch (this) {
+      case STATUS -> {
+        writeHandshake(buf, protocol, hostname, port);
+        writeFrame(buf, STATUS_REQUEST_ID);
+      }
+      case PIPELINED -> {
+        writeHandshake(buf, protocol, hostname, port);
+        writeFrame(buf, STATUS_REQUEST_ID);
+        writePing(buf);
+      }
+      case LEGACY -> {
+        buf.writeByte(0xFE);
+        buf.writeByte(0x01);
+        buf.writeByte(0xFA);
+        writeLegacyString(buf, "MC|PingHost");
+        // Protocol, hostname length, UTF-16 hostname and port
+        buf.writeShort(1 + 2 + hostname.length() * 2 + 4);
+        buf.writeByte(74);
+        writeLegacyString(buf, hostname);
+        buf.writeInt(port);
+      }
+      case NULLPING -> {
+        writeHandshake(buf, protocol, hostname, port);
+        writeFrame(buf, INVALID_ID);
+        writePing(buf);
+      }
+      default -> throw new IllegalStateException();
+    }
+
+    return buf.asReadOnly();
+  }
+
+  /**
+   * Returns the ping sent after the status response in the STATUS mode.
+   */
+  public static ByteBuf createPing() {
+    ByteBuf buf = Unpooled.directBuffer(10);
+    writePing(buf);
+    return buf.asReadOnly();
+  }
+
+  private static void writeHandshake(ByteBuf buf, int protocol, String hostname, int port) {
+    byte[] hostnameBytes = hostname.getBytes(StandardCharsets.UTF_8);
+    int length = 1 + varIntBytes(protocol) + varIntBytes(hostnameBytes.length) + hostnameBytes.length + 2 + 1;
+    writeVarInt(buf, length);
+    buf.writeByte(0x00);
+    writeVarInt(buf, protocol);
+    writeVarInt(buf, hostnameBytes.length);
+    buf.writeBytes(hostnameBytes);
+    buf.writeShort(port);
+    buf.writeByte(1);
+  }
+
+  private static void writeFrame(ByteBuf buf, int packetId) {
+    buf.writeByte(1);
+    buf.writeByte(packetId);
+  }
+
+  private static void writePing(ByteBuf buf) {
+    buf.writeByte(9);
+    buf.writeByte(STATUS_PING_ID);
+    buf.writeLong(System.currentTimeMillis());
+  }
+
+  private static void writeLegacyString(ByteBuf buf, String value) {
+    buf.writeShort(value.length());
+    buf.writeCharSequence(value, StandardCharsets.UTF_16BE);
+  }
+
+  private static void writeVarInt(ByteBuf buf, int value) {
+    while ((value & ~0x7F) != 0) {
+      buf.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+
+    buf.writeByte(value);
+  }
+
+  private static int varIntBytes(int value) {
+    return (Integer.SIZE - Integer.numberOfLeadingZeros(value | 1) + 6) / 7;
+  }
+}
@@ -22,6 +22,7 @@ import com.velocitypowered.api.command.CommandManager;
 import com.velocitypowered.api.event.EventManager;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.network.ProtocolVersion;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
@@ -37,15 +38,9 @@ import com.velocitypowered.proxy.protocol.packet.DisconnectPacket;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import it.unimi.dsi.fastutil.ints.Int2IntMap;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
-import it.unimi.dsi.fastutil.ints.IntSet;
+import io.netty.channel.EventLoopGroup;
+import java.io.IOException;
 import java.lang.reflect.Field;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -53,18 +48,38 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import net.elytrium.commons.utils.reflection.ReflectionException;
 import net.elytrium.commons.utils.updates.UpdatesChecker;
+import net.elytrium.fastmotd.command.FastMOTDCommand;
 import net.elytrium.fastmotd.command.MaintenanceCommand;
 import net.elytrium.fastmotd.command.ReloadCommand;
+import net.elytrium.fastmotd.holder.MOTDSnapshot;
+import net.elytrium.fastmotd.injection.HandshakeSessionHandlerHook;
 import net.elytrium.fastmotd.injection.ServerChannelInitializerHook;
+import net.elytrium.fastmotd.jfr.OnlineUpdateEvent;
+import net.elytrium.fastmotd.jfr.ReloadPhaseEvent;
 import net.elytrium.fastmotd.listener.CompatPingListener;
+import net.elytrium.fastmotd.listener.OnlineCountListener;
 import net.elytrium.fastmotd.listener.ShutdownOnZeroPlayersListener;
+import net.elytrium.fastmotd.utils.AddressMatcher;
+import net.elytrium.fastmotd.utils.ConnectionLimiter;
+import net.elytrium.fastmotd.utils.EventLoopRegistry;
+import net.elytrium.fastmotd.utils.FaviconCache;
+import net.elytrium.fastmotd.utils.FloodDetector;
+import net.elytrium.fastmotd.utils.GenerationContext;
 import net.elytrium.fastmotd.utils.MOTDGenerator;
+import net.elytrium.fastmotd.utils.MOTDRoutingTable;
+import net.elytrium.fastmotd.utils.OffenderList;
+import net.elytrium.fastmotd.utils.PingLog;
+import net.elytrium.fastmotd.utils.PingMetrics;
+import net.elytrium.fastmotd.utils.PrometheusExporter;
+import net.elytrium.fastmotd.utils.StatusSocketProfile;
+import net.elytrium.fastmotd.utils.StatusTimeouts;
 import net.elytrium.fastprepare.PreparedPacket;
 import net.elytrium.fastprepare.PreparedPacketFactory;
 import net.kyori.adventure.text.Component;
@@ -86,21 +101,33 @@ public class FastMOTD {
 
   private static final Field connectionManager;
   private static final Field initializer;
+  private static final Field workerGroup;
 
   private final Logger logger;
   private final VelocityServer server;
   private final Metrics.Factory metricsFactory;
   private final Path configPath;
-  private final List<MOTDGenerator> motdGenerators = new ArrayList<>();
-  private final List<MOTDGenerator> maintenanceMOTDGenerators = new ArrayList<>();
-  private final Int2IntMap protocolPointers = new Int2IntOpenHashMap();
-  private final Int2IntMap maintenanceProtocolPointers = new Int2IntOpenHashMap();
-  private final Map<String, MOTDGenerator> domainMOTD = new HashMap<>();
-  private final Map<String, MOTDGenerator> domainMaintenanceMOTD = new HashMap<>();
+  private final AtomicInteger playerCount = new AtomicInteger();
+  private final AtomicBoolean updateScheduled = new AtomicBoolean();
+  private int lastOnline = -1;
+  private int lastMax = -1;
   private PreparedPacketFactory preparedPacketFactory;
   private ScheduledTask updater;
-  private PreparedPacket kickReason;
-  private Set<InetAddress> kickWhitelist;
+  private ScheduledTask pingLogFlusher;
+  private ScheduledTask floodMonitor;
+  private volatile MOTDSnapshot snapshot;
+  private volatile ConnectionLimiter connectionLimiter;
+  private volatile ConnectionLimiter floodLimiter;
+  private volatile OffenderList offenderList;
+  private volatile boolean underAttack;
+  private volatile AddressMatcher shutdownWhitelist = AddressMatcher.compile(List.of());
+  // The factory of the current flood state, swapped by setUnderAttack instead of being chosen per connection
+  private volatile HandshakeSessionHandlerHook.Factory hookFactory;
+  private HandshakeSessionHandlerHook.Factory normalHookFactory;
+  private HandshakeSessionHandlerHook.Factory floodHookFactory;
+  private volatile StatusSocketProfile statusSocketProfile = StatusSocketProfile.fromSettings();
+  private volatile PingLog pingLog;
+  private PrometheusExporter prometheusExporter;
 
   static {
     try {
@@ -109,6 +136,9 @@ public class FastMOTD {
 
       initializer = ServerChannelInitializerHolder.class.getDeclaredField("initializer");
       initializer.setAccessible(true);
+
+      workerGroup = ConnectionManager.class.getDeclaredField("workerGroup");
+      workerGroup.setAccessible(true);
     } catch (NoSuchFieldException e) {
       throw new ReflectionException(e);
     }
@@ -124,20 +154,29 @@ public class FastMOTD {
 
   @Subscribe
   public void onProxyInitialization(ProxyInitializeEvent event) {
+    ConnectionManager cm;
     try {
-      ConnectionManager cm = (ConnectionManager) connectionManager.get(this.server);
-      ChannelInitializer<?> oldHook = (ChannelInitializer<?>) initializer.get(cm.serverChannelInitializer);
-      initializer.set(cm.serverChannelInitializer, new ServerChannelInitializerHook(this, oldHook));
-      this.logger.info("Hooked into ServerChannelInitializer");
+      cm = (ConnectionManager) connectionManager.get(this.server);
+      EventLoopRegistry.init((EventLoopGroup) workerGroup.get(cm));
+      PingMetrics.init(EventLoopRegistry.size());
     } catch (IllegalAccessException e) {
-      this.logger.info("Error while hooking into ServerChannelInitializer");
       throw new ReflectionException(e);
     }
 
     this.preparedPacketFactory =
         new PreparedPacketFactory(PreparedPacket::new, StateRegistry.LOGIN, false, 1, 1, false, true, false);
 
+    // The first snapshot should be ready before any connection reaches the hook
     this.reload();
+
+    try {
+      ChannelInitializer<?> oldHook = (ChannelInitializer<?>) initializer.get(cm.serverChannelInitializer);
+      initializer.set(cm.serverChannelInitializer, new ServerChannelInitializerHook(this, oldHook));
+      this.logger.info("Hooked into ServerChannelInitializer");
+    } catch (IllegalAccessException e) {
+      this.logger.info("Error while hooking into ServerChannelInitializer");
+      throw new ReflectionException(e);
+    }
   }
 
   public void reload() {
@@ -161,180 +200,365 @@ public class FastMOTD {
       return;
     }
 
-    this.motdGenerators.forEach(MOTDGenerator::dispose);
-    this.maintenanceMOTDGenerators.forEach(MOTDGenerator::dispose);
-    this.domainMOTD.values().forEach(MOTDGenerator::dispose);
-    this.domainMaintenanceMOTD.values().forEach(MOTDGenerator::dispose);
+    final AddressMatcher kickWhitelist = AddressMatcher.compile(Settings.IMP.MAINTENANCE.KICK_WHITELIST, this.logger);
+    final Component kickReasonComponent = serializer.deserialize(Settings.IMP.MAINTENANCE.KICK_MESSAGE.replace("{NL}", "\n"));
+
+    ReloadPhaseEvent phase = new ReloadPhaseEvent();
+    phase.begin();
+    final FaviconCache faviconCache = Settings.IMP.MAIN.FAVICON_CACHE ? FaviconCache.load(this.configPath.resolveSibling("favicons.cache")) : null;
+    this.commitPhase(phase, ReloadPhaseEvent.FAVICON_CACHE_LOAD);
+
+    phase = new ReloadPhaseEvent();
+    phase.begin();
+    GenerationContext context = new GenerationContext(this, serializer, faviconCache);
+    final MOTDRoutingTable routes;
+    final MOTDRoutingTable maintenanceRoutes;
+    final MOTDGenerator floodGenerator;
+    try {
+      routes = this.generateMOTDGenerators(context, Settings.IMP.MAIN.VERSION_NAME, Settings.IMP.MAIN.DESCRIPTIONS,
+          Settings.IMP.MAIN.FAVICONS, Settings.IMP.MAIN.INFORMATION,
+          Settings.IMP.MAIN.VERSIONS.DESCRIPTIONS, Settings.IMP.MAIN.VERSIONS.FAVICONS, Settings.IMP.MAIN.VERSIONS.INFORMATION,
+          Settings.IMP.MAIN.DOMAINS);
+
+      maintenanceRoutes = this.generateMOTDGenerators(context, Settings.IMP.MAINTENANCE.VERSION_NAME,
+          Settings.IMP.MAINTENANCE.DESCRIPTIONS, Settings.IMP.MAINTENANCE.FAVICONS, Settings.IMP.MAINTENANCE.INFORMATION,
+          Settings.IMP.MAINTENANCE.VERSIONS.DESCRIPTIONS, Settings.IMP.MAINTENANCE.VERSIONS.FAVICONS,
+          Settings.IMP.MAINTENANCE.VERSIONS.INFORMATION, Settings.IMP.MAINTENANCE.DOMAINS);
+
+      floodGenerator = Settings.IMP.FLOOD_PROFILE.ENABLED ? this.createGenerator(context, Settings.IMP.MAIN.VERSION_NAME,
+          List.of(Settings.IMP.FLOOD_PROFILE.DESCRIPTION), List.of(), List.of(), null) : null;
+
+      context.join();
+    } catch (RuntimeException e) {
+      // The previous snapshot and its updater stay in place
+      context.discard();
+      throw e;
+    } finally {
+      context.release();
+    }
+
+    this.commitPhase(phase, ReloadPhaseEvent.GENERATION);
+    if (faviconCache != null) {
+      phase = new ReloadPhaseEvent();
+      phase.begin();
+      try {
+        faviconCache.save();
+      } catch (IOException e) {
+        this.logger.warn("Failed to save favicons cache", e);
+      }
 
-    this.protocolPointers.clear();
-    this.motdGenerators.clear();
-    this.domainMOTD.clear();
+      this.commitPhase(phase, ReloadPhaseEvent.FAVICON_CACHE_SAVE);
+    }
+
+    this.applySettings(serializer);
+    PreparedPacket kickReason = this.preparedPacketFactory
+        .createPreparedPacket(ProtocolVersion.MINIMUM_VERSION, ProtocolVersion.MAXIMUM_VERSION)
+        .prepare(version -> DisconnectPacket.create(kickReasonComponent, version, StateRegistry.LOGIN))
+        .build();
 
-    this.maintenanceProtocolPointers.clear();
-    this.maintenanceMOTDGenerators.clear();
-    this.domainMaintenanceMOTD.clear();
+    phase = new ReloadPhaseEvent();
+    phase.begin();
+    this.publish(new MOTDSnapshot(routes, maintenanceRoutes, floodGenerator, kickReason, kickWhitelist, Settings.IMP.MAINTENANCE.MAINTENANCE_ENABLED));
+    this.commitPhase(phase, ReloadPhaseEvent.SWAP);
+
+    if (this.updater != null) {
+      this.updater.cancel();
+    }
+
+    this.updater = this.server.getScheduler()
+        .buildTask(this, () -> {
+          this.playerCount.set(this.server.getPlayerCount());
+          this.updateMOTD();
+        })
+        .repeat(Settings.IMP.MAIN.UPDATE_RATE, TimeUnit.MILLISECONDS)
+        .schedule();
 
+    this.reloadFloodMonitor();
+  }
+
+  /**
+   * Swaps the commands, listeners and network components, called only once the new MOTDs have been generated.
+   */
+  private void applySettings(ComponentSerializer<Component, Component, String> serializer) {
     CommandManager commandManager = this.server.getCommandManager();
     commandManager.unregister("fastmotdreload");
     commandManager.unregister("maintenance");
+    commandManager.unregister("fastmotd");
 
     commandManager.register("fastmotdreload", new ReloadCommand(this));
     commandManager.register("maintenance",
         new MaintenanceCommand(this, serializer.deserialize(Settings.IMP.MAINTENANCE.COMMAND.USAGE)));
+    commandManager.register("fastmotd", new FastMOTDCommand(serializer.deserialize(Settings.IMP.STATS.COMMAND.USAGE)));
 
     EventManager eventManager = this.server.getEventManager();
     eventManager.unregisterListeners(this);
+    eventManager.register(this, ProxyShutdownEvent.class, event -> {
+      this.stopPrometheusExporter();
+      StatusTimeouts.stop();
+    });
     eventManager.register(this, new CompatPingListener(this));
+    if (Settings.IMP.MAIN.UPDATE_LATENCY >= 0) {
+      eventManager.register(this, new OnlineCountListener(this));
+    }
 
     if (Settings.IMP.SHUTDOWN_SCHEDULER.SHUTDOWN_SCHEDULER_ENABLED && Settings.IMP.SHUTDOWN_SCHEDULER.SHUTDOWN_ON_ZERO_PLAYERS) {
       eventManager.register(this, new ShutdownOnZeroPlayersListener(this));
     }
 
-    if (this.updater != null) {
-      this.updater.cancel();
+    this.connectionLimiter = Settings.IMP.RATE_LIMIT.ENABLED ? this.createConnectionLimiter() : null;
+    // Applied only while the flood profile is active
+    this.floodLimiter = Settings.IMP.FLOOD_PROFILE.ENABLED && !Settings.IMP.RATE_LIMIT.ENABLED ? this.createConnectionLimiter() : null;
+    if (Settings.IMP.OFFENDERS.ENABLED) {
+      this.offenderList = new OffenderList(Settings.IMP.OFFENDERS.VIOLATIONS, TimeUnit.SECONDS.toMillis(Settings.IMP.OFFENDERS.DECAY),
+          Settings.IMP.OFFENDERS.TABLE_SIZE);
+    } else {
+      this.offenderList = null;
     }
 
-    if (this.kickReason != null) {
-      this.kickReason.release();
+    this.stopPrometheusExporter();
+    if (Settings.IMP.STATS.PROMETHEUS_ENABLED) {
+      try {
+        this.prometheusExporter = new PrometheusExporter(Settings.IMP.STATS.PROMETHEUS_ADDRESS, Settings.IMP.STATS.PROMETHEUS_PORT);
+      } catch (IOException e) {
+        this.logger.error("Failed to start the Prometheus endpoint", e);
+      }
     }
 
-    Component kickReasonComponent = serializer.deserialize(Settings.IMP.MAINTENANCE.KICK_MESSAGE.replace("{NL}", "\n"));
-    this.kickReason = this.preparedPacketFactory
-        .createPreparedPacket(ProtocolVersion.MINIMUM_VERSION, ProtocolVersion.MAXIMUM_VERSION)
-        .prepare(version -> DisconnectPacket.create(kickReasonComponent, version, StateRegistry.LOGIN))
-        .build();
+    this.shutdownWhitelist = AddressMatcher.compile(Settings.IMP.SHUTDOWN_SCHEDULER.WHITELIST, this.logger);
+    this.reloadPingLog();
+    this.statusSocketProfile = StatusSocketProfile.fromSettings();
+    this.setHookFactories(HandshakeSessionHandlerHook.factory(),
+        Settings.IMP.FLOOD_PROFILE.ENABLED ? HandshakeSessionHandlerHook.floodFactory() : null);
+  }
 
-    this.kickWhitelist = Settings.IMP.MAINTENANCE.KICK_WHITELIST.stream().map((String host) -> {
-      try {
-        return InetAddress.getByName(host);
-      } catch (UnknownHostException e) {
-        throw new IllegalArgumentException(e);
-      }
-    }).collect(Collectors.toSet());
+  private ConnectionLimiter createConnectionLimiter() {
+    return new ConnectionLimiter(Settings.IMP.RATE_LIMIT.ADDRESS_RATE, Settings.IMP.RATE_LIMIT.ADDRESS_BURST,
+        Settings.IMP.RATE_LIMIT.SUBNET_RATE, Settings.IMP.RATE_LIMIT.SUBNET_BURST, Settings.IMP.RATE_LIMIT.TABLE_SIZE);
+  }
 
-    this.generateMOTDGenerators(serializer, Settings.IMP.MAIN.VERSION_NAME, Settings.IMP.MAIN.DESCRIPTIONS,
-            Settings.IMP.MAIN.FAVICONS, Settings.IMP.MAIN.INFORMATION, this.motdGenerators, this.protocolPointers,
-            Settings.IMP.MAIN.VERSIONS.DESCRIPTIONS, Settings.IMP.MAIN.VERSIONS.FAVICONS, Settings.IMP.MAIN.VERSIONS.INFORMATION,
-            Settings.IMP.MAIN.DOMAINS, this.domainMOTD);
+  private void reloadPingLog() {
+    if (this.pingLogFlusher != null) {
+      this.pingLogFlusher.cancel();
+      this.pingLogFlusher = null;
+    }
 
-    this.generateMOTDGenerators(serializer, Settings.IMP.MAINTENANCE.VERSION_NAME, Settings.IMP.MAINTENANCE.DESCRIPTIONS,
-            Settings.IMP.MAINTENANCE.FAVICONS, Settings.IMP.MAINTENANCE.INFORMATION, this.maintenanceMOTDGenerators,
-            this.maintenanceProtocolPointers, Settings.IMP.MAINTENANCE.VERSIONS.DESCRIPTIONS,
-            Settings.IMP.MAINTENANCE.VERSIONS.FAVICONS, Settings.IMP.MAINTENANCE.VERSIONS.INFORMATION,
-            Settings.IMP.MAINTENANCE.DOMAINS, this.domainMaintenanceMOTD);
+    if (this.pingLog != null) {
+      this.pingLog.flush();
+    }
 
-    this.updater = this.server.getScheduler()
-        .buildTask(this, this::updateMOTD)
-        .repeat(Settings.IMP.MAIN.UPDATE_RATE, TimeUnit.MILLISECONDS)
+    if (Settings.IMP.MAIN.LOG_SUMMARY_INTERVAL > 0) {
+      PingLog summary = new PingLog(this.logger, Settings.IMP.MAIN.LOG_SUMMARY_SOURCES);
+      this.pingLog = summary;
+      this.pingLogFlusher = this.server.getScheduler()
+          .buildTask(this, summary::flush)
+          .repeat(Settings.IMP.MAIN.LOG_SUMMARY_INTERVAL, TimeUnit.SECONDS)
+          .schedule();
+    } else {
+      this.pingLog = new PingLog(this.logger);
+    }
+
+    this.pingLog.setMuted(this.underAttack);
+  }
+
+  private void reloadFloodMonitor() {
+    if (this.floodMonitor != null) {
+      this.floodMonitor.cancel();
+      this.floodMonitor = null;
+    }
+
+    if (!Settings.IMP.FLOOD_PROFILE.ENABLED) {
+      this.setUnderAttack(false, 0);
+      return;
+    }
+
+    FloodDetector detector = new FloodDetector(Settings.IMP.FLOOD_PROFILE.ENTER_RATE, Settings.IMP.FLOOD_PROFILE.EXIT_RATE,
+        Settings.IMP.FLOOD_PROFILE.EXIT_DELAY, this.underAttack);
+    this.floodMonitor = this.server.getScheduler()
+        .buildTask(this, () -> {
+          if (detector.update(PingMetrics.sum(PingMetrics.Event.ACCEPTED), System.nanoTime())) {
+            this.setUnderAttack(detector.isFlood(), detector.getRate());
+          }
+        })
+        .repeat(1, TimeUnit.SECONDS)
         .schedule();
   }
 
-  private void generateMOTDGenerators(
-          ComponentSerializer<Component, Component, String> serializer,
-          String versionName, List<String> defaultDescriptions, List<String> defaultFavicons,
-          List<String> defaultInformation, List<MOTDGenerator> dest, Int2IntMap destPointers,
-          Map<String, List<String>> descriptionVersions, Map<String, List<String>> faviconVersions,
-          Map<String, List<String>> informationVersions, Map<String, Settings.DOMAIN_MOTD_NODE> domainMotd,
-          Map<String, MOTDGenerator> domainDest) {
-    descriptionVersions = Objects.requireNonNullElseGet(descriptionVersions, HashMap::new);
-    faviconVersions = Objects.requireNonNullElseGet(faviconVersions, HashMap::new);
-    informationVersions = Objects.requireNonNullElseGet(informationVersions, HashMap::new);
+  private synchronized void setHookFactories(HandshakeSessionHandlerHook.Factory normal, HandshakeSessionHandlerHook.Factory flood) {
+    this.normalHookFactory = normal;
+    this.floodHookFactory = flood;
+    this.hookFactory = this.underAttack && flood != null ? flood : normal;
+  }
+
+  private synchronized void setUnderAttack(boolean underAttack, long rate) {
+    if (this.underAttack == underAttack) {
+      return;
+    }
+
+    if (underAttack) {
+      this.logger.warn("{} connections per second, switching to the flood profile", rate);
+    } else {
+      this.logger.info("{} connections per second, switching back from the flood profile", rate);
+    }
+
+    this.underAttack = underAttack;
+    this.hookFactory = underAttack && this.floodHookFactory != null ? this.floodHookFactory : this.normalHookFactory;
+    this.pingLog.setMuted(underAttack);
+  }
+
+  private MOTDRoutingTable generateMOTDGenerators(
+          GenerationContext context, String versionName, List<String> defaultDescriptions, List<String> defaultFavicons,
+          List<String> defaultInformation, Map<String, List<String>> descriptionVersions, Map<String, List<String>> faviconVersions,
+          Map<String, List<String>> informationVersions, Map<String, Settings.DOMAIN_MOTD_NODE> domainMotd) {
     List<String> nonNullDefaultDescriptions = Objects.requireNonNullElseGet(defaultDescriptions, Collections::emptyList);
     List<String> nonNullDefaultFavicons = Objects.requireNonNullElseGet(defaultFavicons, Collections::emptyList);
     List<String> nonNullDefaultInformation = Objects.requireNonNullElseGet(defaultInformation, Collections::emptyList);
 
-    MOTDGenerator defaultMotdGenerator =
-        new MOTDGenerator(this, serializer, versionName, nonNullDefaultDescriptions, nonNullDefaultFavicons, nonNullDefaultInformation);
-    defaultMotdGenerator.generate();
-    dest.add(defaultMotdGenerator);
-
-    Int2ObjectMap<List<String>> protocolDescriptions = new Int2ObjectOpenHashMap<>();
-    Int2ObjectMap<List<String>> protocolIcons = new Int2ObjectOpenHashMap<>();
-    Int2ObjectMap<List<String>> protocolInformation = new Int2ObjectOpenHashMap<>();
+    MOTDRoutingTable.Builder routes = MOTDRoutingTable.builder(
+        this.createGenerator(context, versionName, nonNullDefaultDescriptions, nonNullDefaultFavicons, nonNullDefaultInformation, null),
+        this.logger);
+
+    List<ProtocolRange> descriptionRanges = this.parseProtocolRanges(descriptionVersions);
+    List<ProtocolRange> faviconRanges = this.parseProtocolRanges(faviconVersions);
+    List<ProtocolRange> informationRanges = this.parseProtocolRanges(informationVersions);
+
+    // Split the configured ranges at every boundary, the data is the same within each of the resulting intervals
+    int[] points = Stream.of(descriptionRanges, faviconRanges, informationRanges)
+        .flatMap(List::stream)
+        .flatMapToInt(range -> IntStream.of(range.start(), range.end() + 1))
+        .distinct()
+        .sorted()
+        .toArray();
+
+    Map<List<List<String>>, MOTDGenerator> generatorsByData = new HashMap<>();
+    for (int i = 0; i < points.length - 1; i++) {
+      int protocol = points[i];
+      List<String> descriptions = this.collectProtocolRanges(descriptionRanges, protocol);
+      List<String> favicons = this.collectProtocolRanges(faviconRanges, protocol);
+      List<String> information = this.collectProtocolRanges(informationRanges, protocol);
+      if (descriptions == null && favicons == null && information == null) {
+        continue;
+      }
 
-    this.sortByProtocolVersion(descriptionVersions, protocolDescriptions);
-    this.sortByProtocolVersion(faviconVersions, protocolIcons);
-    this.sortByProtocolVersion(informationVersions, protocolInformation);
+      List<List<String>> data = List.of(Objects.requireNonNullElse(descriptions, nonNullDefaultDescriptions),
+          Objects.requireNonNullElse(favicons, nonNullDefaultFavicons), Objects.requireNonNullElse(information, nonNullDefaultInformation));
+      MOTDGenerator motdGenerator = generatorsByData.computeIfAbsent(data,
+          key -> this.createGenerator(context, versionName, key.get(0), key.get(1), key.get(2), null));
+      routes.route(protocol, points[i + 1] - 1, motdGenerator);
+    }
 
-    IntSet allProtocols = new IntOpenHashSet();
-    allProtocols.addAll(protocolDescriptions.keySet());
-    allProtocols.addAll(protocolIcons.keySet());
-    allProtocols.addAll(protocolInformation.keySet());
+    domainMotd.forEach((domain, motdNode) ->
+        routes.domain(domain, this.createGenerator(context, versionName, motdNode.DESCRIPTION, motdNode.FAVICON, motdNode.INFORMATION, domain)));
 
-    Map<List<String>, IntSet> protocolsByData = new HashMap<>();
+    return routes.build();
+  }
 
-    allProtocols.forEach(protocol -> {
-      List<String> key = new ArrayList<>();
-      key.addAll(protocolDescriptions.getOrDefault(protocol, nonNullDefaultDescriptions));
-      key.addAll(protocolIcons.getOrDefault(protocol, nonNullDefaultFavicons));
-      key.addAll(protocolInformation.getOrDefault(protocol, nonNullDefaultInformation));
-      protocolsByData.computeIfAbsent(key, k -> new IntOpenHashSet()).add(protocol);
-    });
+  private MOTDGenerator createGenerator(GenerationContext context, String versionName,
+                                        List<String> descriptions, List<String> favicons, List<String> information, String domain) {
+    MOTDGenerator motdGenerator = new MOTDGenerator(versionName, descriptions, favicons, information, domain);
+    context.track(motdGenerator);
+    return motdGenerator;
+  }
 
-    protocolsByData.values().forEach(identical -> {
-      final int idx = dest.size();
-      final int key = identical.iterator().nextInt();
-      MOTDGenerator motdGenerator = new MOTDGenerator(this, serializer, versionName,
-              protocolDescriptions.getOrDefault(key, nonNullDefaultDescriptions),
-              protocolIcons.getOrDefault(key, nonNullDefaultFavicons),
-              protocolInformation.getOrDefault(key, nonNullDefaultInformation));
-      motdGenerator.generate();
-      dest.add(motdGenerator);
-      identical.forEach(p -> destPointers.put(p, idx));
-    });
+  private List<ProtocolRange> parseProtocolRanges(Map<String, List<String>> src) {
+    List<ProtocolRange> ranges = new ArrayList<>();
+    if (src != null) {
+      src.forEach((key, value) -> {
+        if (key.contains("-")) {
+          String[] parts = key.split("-");
+          ranges.add(new ProtocolRange(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), value));
+        } else {
+          int protocol = Integer.parseInt(key);
+          ranges.add(new ProtocolRange(protocol, protocol, value));
+        }
+      });
+    }
 
-    domainMotd.forEach((domain, motdNode) -> {
-      MOTDGenerator motdGenerator = new MOTDGenerator(this, serializer, versionName,
-              motdNode.DESCRIPTION, motdNode.FAVICON, motdNode.INFORMATION);
-      motdGenerator.generate();
-      domainDest.put(domain, motdGenerator);
-    });
+    return ranges;
   }
 
-  private void sortByProtocolVersion(Map<String, List<String>> src, Int2ObjectMap<List<String>> dest) {
-    src.forEach((key, value) -> {
-      IntStream range;
-      if (key.contains("-")) {
-        String[] parts = key.split("-");
-        range = IntStream.rangeClosed(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
-      } else {
-        range = IntStream.of(Integer.parseInt(key));
+  /**
+   * Returns the values of all the ranges containing the protocol, or null if there are no such ranges.
+   */
+  private List<String> collectProtocolRanges(List<ProtocolRange> ranges, int protocol) {
+    List<String> values = null;
+    for (ProtocolRange range : ranges) {
+      if (range.start() <= protocol && protocol <= range.end()) {
+        if (values == null) {
+          values = new ArrayList<>();
+        }
+
+        values.addAll(range.values());
       }
-      range.forEach(protocol -> dest.computeIfAbsent(protocol, p -> new ArrayList<>()).addAll(value));
-    });
-  }
+    }
 
-  private void updateMOTD() {
-    int online = this.getOnline();
-    int max = this.getMax(online);
+    return values;
+  }
 
-    for (MOTDGenerator generator : this.motdGenerators) {
-      generator.update(max, online);
+  private void commitPhase(ReloadPhaseEvent phase, String name) {
+    if (phase.isEnabled()) {
+      phase.commit(name);
     }
+  }
 
-    for (MOTDGenerator generator : this.domainMOTD.values()) {
-      generator.update(max, online);
+  private synchronized void stopPrometheusExporter() {
+    if (this.prometheusExporter != null) {
+      this.prometheusExporter.stop();
+      this.prometheusExporter = null;
     }
+  }
 
-    if (Settings.IMP.MAINTENANCE.OVERRIDE_MAX_ONLINE != -1) {
-      max = Settings.IMP.MAINTENANCE.OVERRIDE_MAX_ONLINE;
+  private synchronized void publish(MOTDSnapshot newSnapshot) {
+    int online = this.getOnline();
+    int max = this.getMax(online);
+    this.update(newSnapshot, max, online);
+    this.lastOnline = online;
+    this.lastMax = max;
+
+    MOTDSnapshot oldSnapshot = this.snapshot;
+    this.snapshot = newSnapshot;
+    if (oldSnapshot != null) {
+      // Pings that have already read the old snapshot are handled on the event loops, wait for them
+      EventLoopRegistry.afterEveryLoop(oldSnapshot::dispose);
     }
+  }
+
+  public synchronized void setMaintenance(boolean maintenance) {
+    this.snapshot = this.snapshot.withMaintenance(maintenance);
+  }
 
-    if (Settings.IMP.MAINTENANCE.OVERRIDE_ONLINE != -1) {
-      online = Settings.IMP.MAINTENANCE.OVERRIDE_ONLINE;
+  public void updatePlayerCount(int delta) {
+    this.playerCount.addAndGet(delta);
+    if (this.updateScheduled.compareAndSet(false, true)) {
+      this.server.getScheduler().buildTask(this, () -> {
+        this.updateScheduled.set(false);
+        this.updateMOTD();
+      }).delay(Settings.IMP.MAIN.UPDATE_LATENCY, TimeUnit.MILLISECONDS).schedule();
     }
+  }
 
-    for (MOTDGenerator generator : this.maintenanceMOTDGenerators) {
-      generator.update(max, online);
+  private synchronized void updateMOTD() {
+    int online = this.getOnline();
+    int max = this.getMax(online);
+    if (online == this.lastOnline && max == this.lastMax) {
+      return;
     }
 
-    for (MOTDGenerator generator : this.domainMaintenanceMOTD.values()) {
-      generator.update(max, online);
+    this.lastOnline = online;
+    this.lastMax = max;
+    this.update(this.snapshot, max, online);
+  }
+
+  private void update(MOTDSnapshot snapshot, int max, int online) {
+    OnlineUpdateEvent event = new OnlineUpdateEvent();
+    event.begin();
+    long copied = snapshot.update(max, online);
+    if (event.isEnabled()) {
+      event.commit(online, max, snapshot.getHolderCount(), copied);
     }
   }
 
   private int getOnline() {
-    int online = this.server.getPlayerCount() + Settings.IMP.MAIN.FAKE_ONLINE_ADD_SINGLE;
+    int online = this.playerCount.get() + Settings.IMP.MAIN.FAKE_ONLINE_ADD_SINGLE;
     return online * (Settings.IMP.MAIN.FAKE_ONLINE_ADD_PERCENT + 100) / 100;
   }
 
@@ -349,36 +573,65 @@ public class FastMOTD {
     return max;
   }
 
-  public ByteBuf getNext(ProtocolVersion version, String serverAddress) {
-    if (Settings.IMP.MAINTENANCE.MAINTENANCE_ENABLED) {
-      return this.domainMaintenanceMOTD.getOrDefault(serverAddress, this.maintenanceMOTDGenerators.get(
-              this.maintenanceProtocolPointers.getOrDefault(version.getProtocol(), 0)))
-              .getNext(version, !Settings.IMP.MAINTENANCE.SHOW_VERSION);
-    } else {
-      return this.domainMOTD.getOrDefault(serverAddress, this.motdGenerators.get(
-              this.protocolPointers.getOrDefault(version.getProtocol(), 0)))
-              .getNext(version, true);
-    }
+  public ByteBuf getNext(ProtocolVersion version, CharSequence hostname, int port) {
+    return this.underAttack ? this.snapshot.getNextFlood(version) : this.snapshot.getNext(version, hostname, port);
   }
 
-  public ServerPing getNextCompat(ProtocolVersion version, String serverAddress) {
-    if (Settings.IMP.MAINTENANCE.MAINTENANCE_ENABLED) {
-      return this.domainMaintenanceMOTD.getOrDefault(serverAddress, this.maintenanceMOTDGenerators.get(
-              this.maintenanceProtocolPointers.getOrDefault(version.getProtocol(), 0)))
-              .getNextCompat(version, !Settings.IMP.MAINTENANCE.SHOW_VERSION);
-    } else {
-      return this.domainMOTD.getOrDefault(serverAddress, this.motdGenerators.get(
-              this.protocolPointers.getOrDefault(version.getProtocol(), 0)))
-              .getNextCompat(version, true);
-    }
+  public ByteBuf getNext(ProtocolVersion version, ByteBuf hostname, int port) {
+    return this.underAttack ? this.snapshot.getNextFlood(version) : this.snapshot.getNext(version, hostname, port);
+  }
+
+  public ByteBuf getNextLegacy(boolean beta, int clientProtocol, CharSequence hostname, int port) {
+    return this.underAttack
+        ? this.snapshot.getNextFloodLegacy(beta, clientProtocol)
+        : this.snapshot.getNextLegacy(beta, clientProtocol, hostname, port);
+  }
+
+  public ServerPing getNextCompat(ProtocolVersion version, CharSequence hostname, int port) {
+    return this.underAttack ? this.snapshot.getNextFloodCompat(version) : this.snapshot.getNextCompat(version, hostname, port);
   }
 
   public void inject(MinecraftConnection connection, ChannelPipeline pipeline) {
     this.preparedPacketFactory.inject(false, connection, pipeline);
   }
 
-  public boolean checkKickWhitelist(InetAddress inetAddress) {
-    return this.kickWhitelist.contains(inetAddress);
+  public AddressMatcher getShutdownWhitelist() {
+    return this.shutdownWhitelist;
+  }
+
+  /**
+   * Returns the limiter applied to new connections, or null if they are not limited.
+   */
+  public ConnectionLimiter getConnectionLimiter() {
+    ConnectionLimiter limiter = this.connectionLimiter;
+    return limiter == null && this.underAttack ? this.floodLimiter : limiter;
+  }
+
+  public StatusSocketProfile getStatusSocketProfile() {
+    return this.statusSocketProfile;
+  }
+
+  /**
+   * Returns the list of the addresses which have sent improper pings, or null if they are not tracked.
+   */
+  public OffenderList getOffenderList() {
+    return this.offenderList;
+  }
+
+  public HandshakeSessionHandlerHook.Factory getHookFactory() {
+    return this.hookFactory;
+  }
+
+  public boolean isUnderAttack() {
+    return this.underAttack;
+  }
+
+  public PingLog getPingLog() {
+    return this.pingLog;
+  }
+
+  public MOTDSnapshot getSnapshot() {
+    return this.snapshot;
   }
 
   public VelocityServer getServer() {
@@ -389,10 +642,6 @@ public class FastMOTD {
     return this.logger;
   }
 
-  public PreparedPacket getKickReason() {
-    return this.kickReason;
-  }
-
   public Path getConfigPath() {
     return this.configPath;
   }
@@ -402,4 +651,8 @@ public class FastMOTD {
     VARIABLE,
     ADD_SOME
   }
+
+  private record ProtocolRange(int start, int end, List<String> values) {
+
+  }
 }
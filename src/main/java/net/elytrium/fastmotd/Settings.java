@@ -50,8 +50,13 @@ public class Settings extends YamlSerializable {
     public List<String> DESCRIPTIONS = List.of("<bold><red>FastMOTD</red></bold>{NL} -> Really fast.");
     public List<String> FAVICONS = List.of("server-icon.png");
     public List<String> INFORMATION = List.of("This is the", "<bold>best server</bold>", "<gradient:green:red>made ever</gradient>", "trust me");
-    @Comment(@CommentValue("How frequently online player count will be updated (in ms)"))
+    @Comment(@CommentValue("How frequently online player count will be synchronized with the proxy (in ms)"))
     public long UPDATE_RATE = 3000;
+    @Comment({
+        @CommentValue("Joins and quits update online player count after this delay (in ms),"),
+        @CommentValue("all the joins and quits within it are applied at once. -1 = disabled")
+    })
+    public long UPDATE_LATENCY = 250;
     @Comment({
         @CommentValue("VARIABLE - from max-count parameter"),
         @CommentValue("ADD_SOME - will add up the number from max-count parameter to current online players amount")
@@ -66,15 +71,41 @@ public class Settings extends YamlSerializable {
         @CommentValue("Set -1 to disable PNG recompression")
     })
     public double PNG_QUALITY = 0.0;
+    @Comment(@CommentValue("Keep recompressed favicons in favicons.cache, so unchanged images are not recompressed on each start"))
+    public boolean FAVICON_CACHE = true;
     @Comment(@CommentValue("Write packets outside of Netty pipeline to avoid plugins that modify packets (e.g. PacketEvents)"))
     public boolean DIRECT_WRITE = false;
+    @Comment({
+        @CommentValue("Prepare the response for every supported protocol version in advance instead of writing the version on each ping."),
+        @CommentValue("Uses more memory per MOTD, but the responses are never modified and are shared between all Netty threads")
+    })
+    public boolean PRECOMPUTE_PROTOCOL_RESPONSES = false;
+    @Comment(@CommentValue("Answer server list pings of pre-1.7 clients and crawlers instead of closing the connection"))
+    public boolean ANSWER_LEGACY_PINGS = true;
+    @Comment({
+        @CommentValue("Status connections have to finish the ping within this time (in ms) after the handshake,"),
+        @CommentValue("otherwise they are closed. 0 = only Velocity's read timeout is applied")
+    })
+    public int STATUS_TIMEOUT = 3000;
     public boolean LOG_PINGS = false;
     public boolean LOG_IMPROPER_PINGS = false;
+    @Comment({
+        @CommentValue("Instead of a line per ping, write one line per this interval (in seconds) with the totals,"),
+        @CommentValue("the top sources and the protocol mix of the logged pings. 0 = a line per ping")
+    })
+    public int LOG_SUMMARY_INTERVAL = 0;
+    @Comment(@CommentValue("How many sources (addresses, or /64 subnets for IPv6) are counted separately in the summary"))
+    public int LOG_SUMMARY_SOURCES = 4096;
     @Comment({
         @CommentValue("Enabling this will allow non-vanilla ping packets sequence,"),
         @CommentValue("but will open your server to nullping attacks")
     })
     public boolean ALLOW_IMPROPER_PINGS = false;
+    @Comment({
+        @CommentValue("Answer status pings right from the raw socket bytes, before Velocity sets up its connection pipeline."),
+        @CommentValue("Login connections are passed to Velocity untouched. Ignored if proxy-protocol is enabled in velocity.toml")
+    })
+    public boolean RAW_STATUS_FAST_PATH = false;
 
     public VERSIONS VERSIONS = new VERSIONS();
 
@@ -91,6 +122,10 @@ public class Settings extends YamlSerializable {
       public Map<String, List<String>> INFORMATION = Map.of("757-758", List.of("Your", "protocol", "version", "is 757 or 758"));
     }
 
+    @Comment({
+        @CommentValue("Keys are \"hostname:port\", \"*.hostname:port\" to match every subdomain, or \"hostname\" to match any port"),
+        @CommentValue("An exact hostname takes priority over a wildcard one")
+    })
     public Map<String, DOMAIN_MOTD_NODE> DOMAINS = Map.of("example.com:25565", new DOMAIN_MOTD_NODE());
   }
 
@@ -100,6 +135,7 @@ public class Settings extends YamlSerializable {
     public boolean MAINTENANCE_ENABLED = false;
     public boolean SHOW_VERSION = true;
     public boolean SHOULD_KICK_ON_JOIN = true;
+    @Comment(@CommentValue("IP addresses or CIDR ranges, e.g. 10.0.0.0/8 or 2001:db8::/32"))
     public List<String> KICK_WHITELIST = List.of("127.0.0.1");
     public String KICK_MESSAGE = "<red>Try to join the server later</red>";
     public String VERSION_NAME = "MAINTENANCE MODE ENABLED!!";
@@ -126,6 +162,10 @@ public class Settings extends YamlSerializable {
       public Map<String, List<String>> INFORMATION = Map.of("756-759", List.of("Server is", "under", "maintenance"));
     }
 
+    @Comment({
+        @CommentValue("Keys are \"hostname:port\", \"*.hostname:port\" to match every subdomain, or \"hostname\" to match any port"),
+        @CommentValue("An exact hostname takes priority over a wildcard one")
+    })
     public Map<String, DOMAIN_MOTD_NODE> DOMAINS = Map.of("example.com:25565", new DOMAIN_MOTD_NODE());
 
     public COMMAND COMMAND = new COMMAND();
@@ -142,9 +182,104 @@ public class Settings extends YamlSerializable {
     public boolean SHUTDOWN_SCHEDULER_ENABLED = false;
     @Comment(@CommentValue("Server will shut down after everyone has left the server"))
     public boolean SHUTDOWN_ON_ZERO_PLAYERS = false;
+    @Comment(@CommentValue("IP addresses or CIDR ranges, e.g. 10.0.0.0/8 or 2001:db8::/32"))
     public List<String> WHITELIST = List.of("127.0.0.1");
   }
 
+  public RATE_LIMIT RATE_LIMIT = new RATE_LIMIT();
+
+  @Comment({
+      @CommentValue("Limits new connections before Velocity handles them, connections over the limit are closed immediately"),
+      @CommentValue("Not applied if proxy-protocol is enabled in Velocity")
+  })
+  public static class RATE_LIMIT {
+    public boolean ENABLED = false;
+    @Comment(@CommentValue("Connections per second allowed from one IP address, and how many of them may come at once"))
+    public double ADDRESS_RATE = 5.0;
+    public int ADDRESS_BURST = 10;
+    @Comment(@CommentValue("Connections per second allowed from one /24 (IPv4) or /48 (IPv6) subnet, and how many of them may come at once"))
+    public double SUBNET_RATE = 50.0;
+    public int SUBNET_BURST = 100;
+    @Comment(@CommentValue("How many addresses and subnets may be tracked at once"))
+    public int TABLE_SIZE = 65536;
+  }
+
+  public OFFENDERS OFFENDERS = new OFFENDERS();
+
+  @Comment({
+      @CommentValue("Closes new connections from the addresses (or /64 subnets for IPv6) which have recently sent improper pings"),
+      @CommentValue("Not applied if proxy-protocol is enabled in Velocity")
+  })
+  public static class OFFENDERS {
+    public boolean ENABLED = false;
+    @Comment(@CommentValue("Improper pings after which the connections are closed"))
+    public int VIOLATIONS = 3;
+    @Comment(@CommentValue("Time (in seconds) in which one improper ping is forgotten"))
+    public int DECAY = 60;
+    @Comment(@CommentValue("How many addresses and subnets may be tracked at once"))
+    public int TABLE_SIZE = 65536;
+  }
+
+  public FLOOD_PROFILE FLOOD_PROFILE = new FLOOD_PROFILE();
+
+  @Comment({
+      @CommentValue("Switches to the flood profile while the proxy accepts too many connections: pings get a minimal response"),
+      @CommentValue("without favicon and information, improper pings are closed regardless of ALLOW_IMPROPER_PINGS,"),
+      @CommentValue("the rate limits are applied even if disabled, and a line per ping is not logged")
+  })
+  public static class FLOOD_PROFILE {
+    public boolean ENABLED = false;
+    @Comment(@CommentValue("Accepted connections per second which switch the flood profile on"))
+    public int ENTER_RATE = 2000;
+    @Comment(@CommentValue("The flood profile is switched off after the rate stays below EXIT_RATE for EXIT_DELAY seconds"))
+    public int EXIT_RATE = 500;
+    public int EXIT_DELAY = 30;
+    public String DESCRIPTION = "<bold><red>FastMOTD</red></bold>";
+  }
+
+  public STATUS_SOCKET STATUS_SOCKET = new STATUS_SOCKET();
+
+  @Comment({
+      @CommentValue("Socket options for the connections which turned out to be pings,"),
+      @CommentValue("TCP_FASTOPEN and TCP_QUICKACK work with the epoll transport only")
+  })
+  public static class STATUS_SOCKET {
+    public boolean ENABLED = false;
+    @Comment({
+        @CommentValue("Close pings with RST (SO_LINGER=0) instead of FIN, so no TIME_WAIT entries are left on the proxy."),
+        @CommentValue("The connection is reset only after the pong has been written to the socket")
+    })
+    public boolean RESET_ON_CLOSE = true;
+    @Comment({
+        @CommentValue("TCP_FASTOPEN queue length of the listener, so the handshake may come within SYN. 0 = disabled"),
+        @CommentValue("It is set on the whole listener at the first connection, logins included, and changing it needs a restart")
+    })
+    public int TCP_FASTOPEN = 256;
+    public boolean TCP_QUICKACK = true;
+    public boolean TCP_NODELAY = true;
+  }
+
+  public STATS STATS = new STATS();
+
+  @Comment(@CommentValue("Ping counters, shown by /fastmotd stats (permission fastmotd.stats)"))
+  public static class STATS {
+    @Comment(@CommentValue("Serve the counters in the Prometheus text format on http://PROMETHEUS_ADDRESS:PROMETHEUS_PORT/metrics"))
+    public boolean PROMETHEUS_ENABLED = false;
+    public String PROMETHEUS_ADDRESS = "127.0.0.1";
+    public int PROMETHEUS_PORT = 9225;
+    @Comment({
+        @CommentValue("One of N connections is timed from the accept to the status response flush and to the pong, 0 = disabled"),
+        @CommentValue("The percentiles are shown along with the counters")
+    })
+    public int LATENCY_SAMPLING = 100;
+
+    public COMMAND COMMAND = new COMMAND();
+
+    public static class COMMAND {
+      public String USAGE = "FastMOTD <gold>>></gold> Usage: <gold>/fastmotd stats</gold>";
+    }
+  }
+
   public static class DOMAIN_MOTD_NODE {
 
     public List<String> DESCRIPTION = List.of("Description for example.com");
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.command;
+
+import com.google.common.collect.ImmutableList;
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.permission.Tristate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import net.elytrium.fastmotd.utils.PingMetrics;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+public class FastMOTDCommand implements SimpleCommand {
+
+  private static final int TOP_ENTRIES = 10;
+
+  private final Component usage;
+
+  public FastMOTDCommand(Component usage) {
+    this.usage = usage;
+  }
+
+  @Override
+  public List<String> suggest(Invocation invocation) {
+    return ImmutableList.of("stats");
+  }
+
+  @Override
+  public void execute(Invocation invocation) {
+    String[] args = invocation.arguments();
+    CommandSource source = invocation.source();
+
+    if (args.length < 1 || !args[0].equals("stats")) {
+      source.sendMessage(this.usage);
+      return;
+    }
+
+    PingMetrics.Totals totals = PingMetrics.collect();
+    Map<Integer, Long> byProtocol = new HashMap<>();
+    Map<String, Long> byDomain = new HashMap<>();
+    totals.getStatusResponsesByProtocol().forEach((protocol, domains) -> domains.forEach((domain, value) -> {
+      byProtocol.merge(protocol, value, Long::sum);
+      byDomain.merge(domain.isEmpty() ? "<none>" : domain, value, Long::sum);
+    }));
+
+    source.sendMessage(Component.text("FastMOTD stats since startup:", NamedTextColor.GOLD));
+    sendLine(source, "Accepted sockets", totals.get(PingMetrics.Event.ACCEPTED));
+    sendLine(source, "Rate limited", totals.get(PingMetrics.Event.RATE_LIMITED));
+    sendLine(source, "Offenders blocked", totals.get(PingMetrics.Event.OFFENDER_BLOCKED));
+    sendLine(source, "Status responses", totals.getStatusResponses());
+    sendLine(source, "Pongs", totals.getPongs());
+    sendLine(source, "Legacy pings", totals.getLegacyPings());
+    sendLine(source, "Improper order", totals.get(PingMetrics.Event.IMPROPER_ORDER));
+    sendLine(source, "Maintenance kicks", totals.get(PingMetrics.Event.MAINTENANCE_KICK));
+    sendTop(source, "Status responses by protocol:", byProtocol);
+    sendTop(source, "Status responses by domain:", byDomain);
+    sendLatency(source, "Status response latency", totals, PingMetrics.Latency.STATUS_RESPONSE);
+    sendLatency(source, "Pong latency", totals, PingMetrics.Latency.PONG);
+  }
+
+  private static void sendLatency(CommandSource source, String name, PingMetrics.Totals totals, PingMetrics.Latency latency) {
+    long count = totals.getLatencyCount(latency);
+    if (count == 0) {
+      return;
+    }
+
+    source.sendMessage(Component.text(" " + name + ": ", NamedTextColor.GRAY).append(Component.text(String.format(Locale.ROOT,
+        "p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms (%d samples)",
+        totals.getLatencyPercentileMicros(latency, 50.0) / 1000.0, totals.getLatencyPercentileMicros(latency, 99.0) / 1000.0,
+        totals.getLatencyPercentileMicros(latency, 99.9) / 1000.0, count), NamedTextColor.WHITE)));
+  }
+
+  private static void sendLine(CommandSource source, String name, long value) {
+    source.sendMessage(Component.text(" " + name + ": ", NamedTextColor.GRAY).append(Component.text(value, NamedTextColor.WHITE)));
+  }
+
+  private static <K> void sendTop(CommandSource source, String title, Map<K, Long> values) {
+    if (values.isEmpty()) {
+      return;
+    }
+
+    source.sendMessage(Component.text(title, NamedTextColor.GOLD));
+    values.entrySet().stream()
+        .sorted(Map.Entry.<K, Long>comparingByValue().reversed())
+        .limit(TOP_ENTRIES)
+        .forEach(entry -> sendLine(source, String.valueOf(entry.getKey()), entry.getValue()));
+  }
+
+  @Override
+  public boolean hasPermission(Invocation invocation) {
+    return invocation.source().getPermissionValue("fastmotd.stats") == Tristate.TRUE;
+  }
+}
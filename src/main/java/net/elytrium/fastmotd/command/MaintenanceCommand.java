@@ -69,6 +69,7 @@ public class MaintenanceCommand implements SimpleCommand {
         return;
     }
 
+    this.plugin.setMaintenance(Settings.IMP.MAINTENANCE.MAINTENANCE_ENABLED);
     Settings.IMP.save(this.plugin.getConfigPath());
   }
 
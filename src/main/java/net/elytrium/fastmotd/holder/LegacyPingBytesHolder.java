@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.holder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import net.elytrium.fastmotd.utils.ProtocolByteBufSet;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+/**
+ * Precomputed responses to the pre-1.7 server list pings, which are 0xFF kick packets with a UTF-16BE string.
+ * 1.4 - 1.6 clients get "§1\0protocol\0version\0motd\0online\0max", older ones get "motd§online§max".
+ * There is a variant of the first one for every 1.6 protocol, as these clients show the online count
+ * only if the protocol matches theirs, otherwise the version name is shown in red instead.
+ */
+public class LegacyPingBytesHolder {
+
+  // Legacy clients do not accept longer kick messages
+  private static final int MAX_LENGTH = 256;
+  private static final int MAX_VERSION_NAME_LENGTH = 64;
+  /**
+   * Protocol of the clients which do not send it (1.4, 1.5) or of a response which should show the version name.
+   * No legacy client has it, so they always show the version name instead of the online count.
+   */
+  public static final int NO_PROTOCOL = 127;
+  // 1.6.1, 1.6.2 and 1.6.4, the only versions sending their protocol in the ping
+  private static final int[] PROTOCOLS = { NO_PROTOCOL, 73, 74, 78 };
+  // Legacy clients use Integer.parseInt, so the slots are padded with zeros instead of spaces
+  private static final String DIGITS_PLACEHOLDER = "00000000";
+  private static final String PROTOCOL_PLACEHOLDER = "000";
+
+  private final Response response;
+  private final Response betaResponse;
+
+  public LegacyPingBytesHolder(String versionName, Component description) {
+    String motd = LegacyComponentSerializer.legacySection().serialize(description);
+    int newLine = motd.indexOf('\n');
+    if (newLine != -1) {
+      motd = motd.substring(0, newLine);
+    }
+
+    String name = versionName.length() > MAX_VERSION_NAME_LENGTH ? versionName.substring(0, MAX_VERSION_NAME_LENGTH) : versionName;
+    this.response = new Response("§1\0" + PROTOCOL_PLACEHOLDER + "\0" + name + "\0", motd, "\0", PROTOCOLS);
+    // Beta clients split the message by §, so there must be no colors
+    this.betaResponse = new Response("", motd.replaceAll("§.?", ""), "§", new int[0]);
+  }
+
+  /**
+   * Creates the kick packet which disconnects a pre-1.7 client with the message.
+   */
+  public static ByteBuf createKick(String message) {
+    ByteBuf kick = Unpooled.directBuffer(1 + Short.BYTES + message.length() * Character.BYTES);
+    kick.writeByte(0xFF);
+    kick.writeShort(message.length());
+    kick.writeCharSequence(message, StandardCharsets.UTF_16BE);
+    return kick;
+  }
+
+  /**
+   * Returns the amount of bytes copied into the published buffers.
+   */
+  public int replaceOnline(int max, int online) {
+    return this.response.replaceOnline(max, online) + this.betaResponse.replaceOnline(max, online);
+  }
+
+  /**
+   * Returns a retained slice owned by the caller, it must not be modified. The protocol is ignored for the beta clients,
+   * an unknown one is replaced with {@link #NO_PROTOCOL}.
+   */
+  public ByteBuf getByteBuf(boolean beta, int protocol) {
+    if (beta) {
+      return this.betaResponse.byteBuf.get(0);
+    }
+
+    for (int i = 1; i < PROTOCOLS.length; i++) {
+      if (PROTOCOLS[i] == protocol) {
+        return this.response.byteBuf.get(i);
+      }
+    }
+
+    return this.response.byteBuf.get(0);
+  }
+
+  public void dispose() {
+    this.response.dispose();
+    this.betaResponse.dispose();
+  }
+
+  private static final class Response {
+
+    private final ByteBuf head;
+    private final int onlineDigit;
+    private final int maxOnlineDigit;
+    private final int[] protocols;
+    private final ProtocolByteBufSet byteBuf;
+
+    /**
+     * The prefix contains {@link #PROTOCOL_PLACEHOLDER} right after "§1\0" if there are any protocols.
+     */
+    private Response(String prefix, String motd, String separator, int[] protocols) {
+      int motdLength = MAX_LENGTH - prefix.length() - 2 * (separator.length() + DIGITS_PLACEHOLDER.length());
+      if (motd.length() > motdLength) {
+        motd = motd.substring(0, motdLength);
+      }
+
+      if (motd.endsWith("§")) {
+        motd = motd.substring(0, motd.length() - 1);
+      }
+
+      String message = prefix + motd + separator + DIGITS_PLACEHOLDER + separator + DIGITS_PLACEHOLDER;
+      this.onlineDigit = 1 + Short.BYTES + (prefix.length() + motd.length() + separator.length()) * Character.BYTES;
+      this.maxOnlineDigit = this.onlineDigit + (DIGITS_PLACEHOLDER.length() + separator.length()) * Character.BYTES;
+
+      this.head = createKick(message);
+      this.protocols = protocols;
+      this.byteBuf = new ProtocolByteBufSet(this.createBlock(), this.head.readableBytes(), null);
+    }
+
+    private ByteBuf createBlock() {
+      if (this.protocols.length == 0) {
+        return this.head.copy();
+      }
+
+      ByteBuf block = Unpooled.directBuffer(this.head.readableBytes() * this.protocols.length);
+      for (int protocol : this.protocols) {
+        // The protocol goes right after the 0xFF id, the length and "§1\0"
+        this.replaceDigits(1 + Short.BYTES + 3 * Character.BYTES, PROTOCOL_PLACEHOLDER.length(), protocol);
+        block.writeBytes(this.head, this.head.readerIndex(), this.head.readableBytes());
+      }
+
+      return block;
+    }
+
+    private int replaceOnline(int max, int online) {
+      this.replaceDigits(this.onlineDigit, DIGITS_PLACEHOLDER.length(), online);
+      this.replaceDigits(this.maxOnlineDigit, DIGITS_PLACEHOLDER.length(), max);
+      ByteBuf block = this.createBlock();
+      int copied = block.readableBytes();
+      this.byteBuf.publish(block);
+      return copied;
+    }
+
+    private void replaceDigits(int digit, int length, int to) {
+      for (int i = length - 1; i >= 0; i--) {
+        this.head.setChar(digit + i * Character.BYTES, (to % 10) + '0');
+        to /= 10;
+      }
+    }
+
+    private void dispose() {
+      this.byteBuf.release();
+      this.head.release();
+    }
+  }
+}
@@ -27,25 +27,28 @@ import io.netty.buffer.Unpooled;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.UUID;
-import net.elytrium.fastmotd.utils.ByteBufCopyThreadLocal;
+import net.elytrium.fastmotd.Settings;
+import net.elytrium.fastmotd.utils.EventLoopByteBufSet;
+import net.elytrium.fastmotd.utils.ProtocolByteBufSet;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.serializer.ComponentSerializer;
 import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
-import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 
 public class MOTDBytesHolder {
 
-  private final ByteBuf byteBuf;
-  private final ComponentSerializer<Component, Component, String> inputSerializer;
   private final int maxOnlineDigit;
   private final int onlineDigit;
   private final int protocolDigit;
-  private ByteBufCopyThreadLocal localByteBuf;
+  private final ProtocolVersion firstVersion;
+  private final ProtocolVersion lastVersion;
+  private final ByteBuf head;
+  private final EventLoopByteBufSet localByteBuf;
+  private final ProtocolByteBufSet protocolByteBuf;
   private ServerPing compatPingInfo;
 
-  public MOTDBytesHolder(ComponentSerializer<Component, Component, String> inputSerializer, GsonComponentSerializer outputSerializer,
-                         String name, Component description, String favicon, List<String> information) {
-    this.inputSerializer = inputSerializer;
+  public MOTDBytesHolder(GsonComponentSerializer outputSerializer, ProtocolVersion firstVersion, ProtocolVersion lastVersion,
+                         String name, Component description, String favicon, ByteBuf faviconSegment, List<String> legacyInformation) {
+    this.firstVersion = firstVersion;
+    this.lastVersion = lastVersion;
     ServerPing.Builder compatServerPingBuilder = ServerPing.builder();
 
     StringBuilder motd = new StringBuilder("{\"players\":{\"max\":       0,\"online\":       1,\"sample\":[");
@@ -53,23 +56,23 @@ public class MOTDBytesHolder {
     compatServerPingBuilder.maximumPlayers(0);
     compatServerPingBuilder.onlinePlayers(1);
 
-    int lastIdx = information.size() - 1;
+    int lastIdx = legacyInformation.size() - 1;
     if (lastIdx != -1) {
       if (lastIdx > 9) {
         lastIdx = 9;
       }
 
       for (int i = 0; i < lastIdx; i++) {
-        String e = information.get(i);
-        motd.append("{\"id\":\"00000000-0000-0000-0000-00000000000").append(i).append("\",\"name\":\"").append(this.toLegacy(e)).append("\"},");
+        String e = legacyInformation.get(i);
+        motd.append("{\"id\":\"00000000-0000-0000-0000-00000000000").append(i).append("\",\"name\":\"").append(e).append("\"},");
       }
 
       motd.append("{\"id\":\"00000000-0000-0000-0000-000000000009\",\"name\":\"")
-          .append(this.toLegacy(information.get(lastIdx)))
+          .append(legacyInformation.get(lastIdx))
           .append("\"}");
 
-      compatServerPingBuilder.samplePlayers(information.stream()
-          .map(e -> new ServerPing.SamplePlayer(this.toLegacy(e), UUID.randomUUID()))
+      compatServerPingBuilder.samplePlayers(legacyInformation.stream()
+          .map(e -> new ServerPing.SamplePlayer(e, UUID.randomUUID()))
           .toArray(ServerPing.SamplePlayer[]::new));
     }
 
@@ -83,18 +86,18 @@ public class MOTDBytesHolder {
     compatServerPingBuilder.version(new ServerPing.Version(1, name));
 
     if (favicon != null && !favicon.isEmpty()) {
-      motd.append(",\"favicon\":\"")
-          .append(favicon)
-          .append("\"");
-
       compatServerPingBuilder.favicon(new Favicon(favicon));
     }
 
-    motd.append("}");
+    // The favicon segment closes the JSON object itself
+    if (faviconSegment == null) {
+      motd.append("}");
+    }
 
     byte[] bytes = motd.toString().getBytes(StandardCharsets.UTF_8);
-    int varIntLength = ProtocolUtils.varIntBytes(bytes.length);
-    int length = bytes.length + varIntLength + 1;
+    int jsonLength = bytes.length + (faviconSegment == null ? 0 : faviconSegment.readableBytes());
+    int varIntLength = ProtocolUtils.varIntBytes(jsonLength);
+    int length = jsonLength + varIntLength + 1;
     int lengthOfLength = ProtocolUtils.varIntBytes(length);
     varIntLength += lengthOfLength;
 
@@ -102,39 +105,80 @@ public class MOTDBytesHolder {
     this.onlineDigit = Bytes.indexOf(bytes, "       1".getBytes(StandardCharsets.UTF_8)) + 1 + varIntLength;
     this.protocolDigit = Bytes.indexOf(bytes, "protocol\":        1}".getBytes(StandardCharsets.UTF_8)) + 19 + varIntLength;
 
-    this.byteBuf = Unpooled.directBuffer(length + lengthOfLength);
-    ProtocolUtils.writeVarInt(this.byteBuf, length);
-    this.byteBuf.writeByte(0);
-    ProtocolUtils.writeVarInt(this.byteBuf, bytes.length);
-    this.byteBuf.writeBytes(bytes);
+    this.head = Unpooled.directBuffer(bytes.length + varIntLength + 1);
+    ProtocolUtils.writeVarInt(this.head, length);
+    this.head.writeByte(0);
+    ProtocolUtils.writeVarInt(this.head, jsonLength);
+    this.head.writeBytes(bytes);
+
+    ByteBuf tail = faviconSegment == null ? null : faviconSegment.retainedDuplicate();
+    if (Settings.IMP.MAIN.PRECOMPUTE_PROTOCOL_RESPONSES) {
+      this.localByteBuf = null;
+      this.protocolByteBuf = new ProtocolByteBufSet(this.createVariants(), this.head.readableBytes(), tail);
+    } else {
+      this.localByteBuf = new EventLoopByteBufSet(this.head.copy(), tail);
+      this.protocolByteBuf = null;
+    }
 
-    this.localByteBuf = new ByteBufCopyThreadLocal(this.byteBuf);
     this.compatPingInfo = compatServerPingBuilder.build();
   }
 
-  public void replaceOnline(int max, int online) {
-    this.localReplaceOnline(this.maxOnlineDigit, max);
-    this.localReplaceOnline(this.onlineDigit, online);
+  /**
+   * Creates the read-only JSON tail with the favicon, it may be shared by any amount of holders.
+   */
+  public static ByteBuf createFaviconSegment(String favicon) {
+    byte[] bytes = (",\"favicon\":\"" + favicon + "\"}").getBytes(StandardCharsets.UTF_8);
+    return Unpooled.directBuffer(bytes.length).writeBytes(bytes).asReadOnly();
+  }
 
-    ByteBufCopyThreadLocal previousLocalBuffer = this.localByteBuf;
-    this.localByteBuf = new ByteBufCopyThreadLocal(this.byteBuf);
-    previousLocalBuffer.release();
+  // Variant 0 keeps the placeholder protocol, the others follow the order of ProtocolVersion constants
+  private ByteBuf createVariants() {
+    int headLength = this.head.readableBytes();
+    int variantsAmount = this.lastVersion.ordinal() - this.firstVersion.ordinal() + 2;
+    ByteBuf block = Unpooled.directBuffer(headLength * variantsAmount);
+    block.writeBytes(this.head, this.head.readerIndex(), headLength);
+
+    ProtocolVersion[] versions = ProtocolVersion.values();
+    for (int i = this.firstVersion.ordinal(); i <= this.lastVersion.ordinal(); i++) {
+      int offset = block.writerIndex();
+      block.writeBytes(this.head, this.head.readerIndex(), headLength);
+      this.replaceStrInt(block, offset + this.protocolDigit, offset + this.protocolDigit - 9, versions[i].getProtocol());
+    }
+
+    return block;
+  }
+
+  /**
+   * Returns the amount of bytes copied into the published buffers.
+   */
+  public int replaceOnline(int max, int online) {
+    this.localReplaceOnline(this.head, this.maxOnlineDigit, max);
+    this.localReplaceOnline(this.head, this.onlineDigit, online);
+
+    ByteBuf published = this.protocolByteBuf != null ? this.createVariants() : this.head.copy();
+    int copied = published.readableBytes();
+    if (this.protocolByteBuf != null) {
+      this.protocolByteBuf.publish(published);
+    } else {
+      this.localByteBuf.publish(published);
+    }
 
     this.compatPingInfo = this.compatPingInfo.asBuilder()
         .maximumPlayers(max)
         .onlinePlayers(online)
         .build();
+    return copied;
   }
 
-  private void localReplaceOnline(int digit, int to) {
-    this.byteBuf.setByte(digit + 0, to >= 10000000 ? (to / 10000000 % 10) + '0' : ' ');
-    this.byteBuf.setByte(digit + 1, to >= 1000000 ? (to / 1000000 % 10) + '0' : ' ');
-    this.byteBuf.setByte(digit + 2, to >= 100000 ? (to / 100000 % 10) + '0' : ' ');
-    this.byteBuf.setByte(digit + 3, to >= 10000 ? (to / 10000 % 10) + '0' : ' ');
-    this.byteBuf.setByte(digit + 4, to >= 1000 ? (to / 1000 % 10) + '0' : ' ');
-    this.byteBuf.setByte(digit + 5, to >= 100 ? (to / 100 % 10) + '0' : ' ');
-    this.byteBuf.setByte(digit + 6, to >= 10 ? (to / 10 % 10) + '0' : ' ');
-    this.byteBuf.setByte(digit + 7, (to % 10) + '0');
+  private void localReplaceOnline(ByteBuf byteBuf, int digit, int to) {
+    byteBuf.setByte(digit + 0, to >= 10000000 ? (to / 10000000 % 10) + '0' : ' ');
+    byteBuf.setByte(digit + 1, to >= 1000000 ? (to / 1000000 % 10) + '0' : ' ');
+    byteBuf.setByte(digit + 2, to >= 100000 ? (to / 100000 % 10) + '0' : ' ');
+    byteBuf.setByte(digit + 3, to >= 10000 ? (to / 10000 % 10) + '0' : ' ');
+    byteBuf.setByte(digit + 4, to >= 1000 ? (to / 1000 % 10) + '0' : ' ');
+    byteBuf.setByte(digit + 5, to >= 100 ? (to / 100 % 10) + '0' : ' ');
+    byteBuf.setByte(digit + 6, to >= 10 ? (to / 10 % 10) + '0' : ' ');
+    byteBuf.setByte(digit + 7, (to % 10) + '0');
   }
 
   public ServerPing getCompatPingInfo(ProtocolVersion version, boolean replaceProtocol) {
@@ -148,6 +192,18 @@ public class MOTDBytesHolder {
   }
 
   public ByteBuf getByteBuf(ProtocolVersion version, boolean replaceProtocol) {
+    if (this.protocolByteBuf != null) {
+      int variant = 0;
+      if (replaceProtocol) {
+        variant = version.ordinal() - this.firstVersion.ordinal() + 1;
+        if (variant < 1 || variant >= this.protocolByteBuf.size()) {
+          variant = 0;
+        }
+      }
+
+      return this.protocolByteBuf.get(variant);
+    }
+
     ByteBuf buf = this.localByteBuf.get();
 
     if (replaceProtocol) {
@@ -155,7 +211,7 @@ public class MOTDBytesHolder {
       this.replaceStrInt(buf, this.protocolDigit, this.protocolDigit - 9, protocol);
     }
 
-    return buf.retain();
+    return buf;
   }
 
   private void replaceStrInt(ByteBuf buf, int startIndex, int endIndex, int toSet) {
@@ -169,15 +225,13 @@ public class MOTDBytesHolder {
     }
   }
 
-  private String toLegacy(String from) {
-    return LegacyComponentSerializer.legacySection().serialize(this.inputSerializer.deserialize(from));
-  }
-
   public void dispose() {
-    if (this.byteBuf.refCnt() != 0) {
-      this.byteBuf.release();
+    if (this.protocolByteBuf != null) {
+      this.protocolByteBuf.release();
+    } else {
+      this.localByteBuf.release();
     }
 
-    this.localByteBuf.release();
+    this.head.release();
   }
 }
@@ -23,27 +23,31 @@ import com.velocitypowered.proxy.protocol.ProtocolUtils;
 import io.netty.buffer.ByteBuf;
 import java.util.List;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.serializer.ComponentSerializer;
 
 public class MOTDHolder {
 
   private final MOTDBytesHolder legacyHolder;
   private final MOTDBytesHolder modernHolder;
+  private final LegacyPingBytesHolder legacyPingHolder;
 
-  public MOTDHolder(ComponentSerializer<Component, Component, String> serializer, String versionName,
-                    String descriptionSerialized, String favicon, List<String> information) {
+  public MOTDHolder(String versionName, Component description, String favicon, ByteBuf faviconSegment, List<String> legacyInformation) {
     String name = versionName.replace("\"", "\\\"");
-    Component description = serializer.deserialize(descriptionSerialized.replace("{NL}", "\n"));
 
     this.legacyHolder =
-        new MOTDBytesHolder(serializer, ProtocolUtils.getJsonChatSerializer(ProtocolVersion.MINECRAFT_1_15_2), name, description, favicon, information);
+        new MOTDBytesHolder(ProtocolUtils.getJsonChatSerializer(ProtocolVersion.MINECRAFT_1_15_2),
+            ProtocolVersion.MINIMUM_VERSION, ProtocolVersion.MINECRAFT_1_15_2, name, description, favicon, faviconSegment, legacyInformation);
     this.modernHolder =
-        new MOTDBytesHolder(serializer, ProtocolUtils.getJsonChatSerializer(ProtocolVersion.MINECRAFT_1_16), name, description, favicon, information);
+        new MOTDBytesHolder(ProtocolUtils.getJsonChatSerializer(ProtocolVersion.MINECRAFT_1_16),
+            ProtocolVersion.MINECRAFT_1_16, ProtocolVersion.MAXIMUM_VERSION, name, description, favicon, faviconSegment, legacyInformation);
+    this.legacyPingHolder = new LegacyPingBytesHolder(versionName, description);
   }
 
-  public void replaceOnline(int max, int online) {
-    this.legacyHolder.replaceOnline(max, online);
-    this.modernHolder.replaceOnline(max, online);
+  /**
+   * Returns the amount of bytes copied into the published buffers.
+   */
+  public int replaceOnline(int max, int online) {
+    return this.legacyHolder.replaceOnline(max, online) + this.modernHolder.replaceOnline(max, online)
+        + this.legacyPingHolder.replaceOnline(max, online);
   }
 
   public ByteBuf getByteBuf(ProtocolVersion version, boolean replaceProtocol) {
@@ -54,6 +58,10 @@ public class MOTDHolder {
     }
   }
 
+  public ByteBuf getLegacyByteBuf(boolean beta, int protocol) {
+    return this.legacyPingHolder.getByteBuf(beta, protocol);
+  }
+
   public ServerPing getCompatPingInfo(ProtocolVersion version, boolean replaceProtocol) {
     if (version.compareTo(ProtocolVersion.MINECRAFT_1_16) >= 0) {
       return this.modernHolder.getCompatPingInfo(version, replaceProtocol);
@@ -65,5 +73,6 @@ public class MOTDHolder {
   public void dispose() {
     this.legacyHolder.dispose();
     this.modernHolder.dispose();
+    this.legacyPingHolder.dispose();
   }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.holder;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import io.netty.buffer.ByteBuf;
+import java.net.InetAddress;
+import net.elytrium.fastmotd.Settings;
+import net.elytrium.fastmotd.utils.AddressMatcher;
+import net.elytrium.fastmotd.utils.MOTDGenerator;
+import net.elytrium.fastmotd.utils.MOTDRoutingTable;
+import net.elytrium.fastprepare.PreparedPacket;
+
+/**
+ * Everything needed to answer a ping, built by a reload and never modified after being published.
+ * Only the online count inside the generators changes.
+ */
+public class MOTDSnapshot {
+
+  private final MOTDRoutingTable routes;
+  private final MOTDRoutingTable maintenanceRoutes;
+  private final MOTDGenerator floodGenerator;
+  private final MOTDGenerator floodRoute;
+  private final PreparedPacket kickReason;
+  private final AddressMatcher kickWhitelist;
+  private final boolean maintenance;
+  private final boolean showMaintenanceVersion;
+  private final int overrideOnline;
+  private final int overrideMaxOnline;
+
+  /**
+   * The flood generator is null if the flood profile is disabled, the pings still routed to it get the fallback response then.
+   */
+  public MOTDSnapshot(MOTDRoutingTable routes, MOTDRoutingTable maintenanceRoutes, MOTDGenerator floodGenerator,
+                      PreparedPacket kickReason, AddressMatcher kickWhitelist, boolean maintenance) {
+    this.routes = routes;
+    this.maintenanceRoutes = maintenanceRoutes;
+    this.floodGenerator = floodGenerator;
+    this.floodRoute = floodGenerator == null ? routes.getFallback() : floodGenerator;
+    this.kickReason = kickReason;
+    this.kickWhitelist = kickWhitelist;
+    this.maintenance = maintenance;
+    this.showMaintenanceVersion = Settings.IMP.MAINTENANCE.SHOW_VERSION;
+    this.overrideOnline = Settings.IMP.MAINTENANCE.OVERRIDE_ONLINE;
+    this.overrideMaxOnline = Settings.IMP.MAINTENANCE.OVERRIDE_MAX_ONLINE;
+  }
+
+  /**
+   * Returns a snapshot sharing all the generators with this one, so only one of them may be disposed.
+   */
+  public MOTDSnapshot withMaintenance(boolean maintenance) {
+    return new MOTDSnapshot(this.routes, this.maintenanceRoutes, this.floodGenerator, this.kickReason, this.kickWhitelist, maintenance);
+  }
+
+  /**
+   * Returns the amount of bytes copied into the published buffers.
+   */
+  public long update(int max, int online) {
+    long copied = 0;
+    for (MOTDGenerator generator : this.routes.getGenerators()) {
+      copied += generator.update(max, online);
+    }
+
+    if (this.floodGenerator != null) {
+      copied += this.floodGenerator.update(max, online);
+    }
+
+    if (this.overrideMaxOnline != -1) {
+      max = this.overrideMaxOnline;
+    }
+
+    if (this.overrideOnline != -1) {
+      online = this.overrideOnline;
+    }
+
+    for (MOTDGenerator generator : this.maintenanceRoutes.getGenerators()) {
+      copied += generator.update(max, online);
+    }
+
+    return copied;
+  }
+
+  public int getHolderCount() {
+    return this.routes.getGenerators().stream().mapToInt(MOTDGenerator::getHolderCount).sum()
+        + this.maintenanceRoutes.getGenerators().stream().mapToInt(MOTDGenerator::getHolderCount).sum()
+        + (this.floodGenerator == null ? 0 : this.floodGenerator.getHolderCount());
+  }
+
+  public ByteBuf getNext(ProtocolVersion version, CharSequence hostname, int port) {
+    if (this.maintenance) {
+      return this.maintenanceRoutes.route(version.getProtocol(), hostname, port).getNext(version, !this.showMaintenanceVersion);
+    } else {
+      return this.routes.route(version.getProtocol(), hostname, port).getNext(version, true);
+    }
+  }
+
+  public ByteBuf getNext(ProtocolVersion version, ByteBuf hostname, int port) {
+    if (this.maintenance) {
+      return this.maintenanceRoutes.route(version.getProtocol(), hostname, port).getNext(version, !this.showMaintenanceVersion);
+    } else {
+      return this.routes.route(version.getProtocol(), hostname, port).getNext(version, true);
+    }
+  }
+
+  /**
+   * Returns the pre-1.7 ping response, beta is for the clients older than 1.4. The protocol of the client is echoed
+   * unless the maintenance version has to be shown, {@link LegacyPingBytesHolder#NO_PROTOCOL} if it is not known.
+   */
+  public ByteBuf getNextLegacy(boolean beta, int clientProtocol, CharSequence hostname, int port) {
+    int protocol = ProtocolVersion.LEGACY.getProtocol();
+    if (this.maintenance) {
+      return this.maintenanceRoutes.route(protocol, hostname, port)
+          .getNextLegacy(beta, this.showMaintenanceVersion ? LegacyPingBytesHolder.NO_PROTOCOL : clientProtocol);
+    } else {
+      return this.routes.route(protocol, hostname, port).getNextLegacy(beta, clientProtocol);
+    }
+  }
+
+  public ServerPing getNextCompat(ProtocolVersion version, CharSequence hostname, int port) {
+    if (this.maintenance) {
+      return this.maintenanceRoutes.route(version.getProtocol(), hostname, port).getNextCompat(version, !this.showMaintenanceVersion);
+    } else {
+      return this.routes.route(version.getProtocol(), hostname, port).getNextCompat(version, true);
+    }
+  }
+
+  /**
+   * Returns the minimal response of the flood profile, it is the same for every domain and ignores the maintenance.
+   */
+  public ByteBuf getNextFlood(ProtocolVersion version) {
+    return this.floodRoute.getNext(version, true);
+  }
+
+  public ByteBuf getNextFloodLegacy(boolean beta, int clientProtocol) {
+    return this.floodRoute.getNextLegacy(beta, clientProtocol);
+  }
+
+  public ServerPing getNextFloodCompat(ProtocolVersion version) {
+    return this.floodRoute.getNextCompat(version, true);
+  }
+
+  public boolean isMaintenance() {
+    return this.maintenance;
+  }
+
+  public PreparedPacket getKickReason() {
+    return this.kickReason;
+  }
+
+  public boolean checkKickWhitelist(InetAddress inetAddress) {
+    return this.kickWhitelist.contains(inetAddress);
+  }
+
+  public void dispose() {
+    this.routes.getGenerators().forEach(MOTDGenerator::dispose);
+    this.maintenanceRoutes.getGenerators().forEach(MOTDGenerator::dispose);
+    if (this.floodGenerator != null) {
+      this.floodGenerator.dispose();
+    }
+
+    this.kickReason.release();
+  }
+}
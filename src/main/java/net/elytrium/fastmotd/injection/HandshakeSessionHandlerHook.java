@@ -30,20 +30,39 @@ import com.velocitypowered.proxy.protocol.packet.LegacyHandshakePacket;
 import com.velocitypowered.proxy.protocol.packet.LegacyPingPacket;
 import com.velocitypowered.proxy.protocol.packet.StatusPingPacket;
 import com.velocitypowered.proxy.protocol.packet.StatusRequestPacket;
+import com.velocitypowered.proxy.protocol.packet.legacyping.LegacyMinecraftPingVersion;
 import com.velocitypowered.proxy.util.except.QuietRuntimeException;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import java.net.InetSocketAddress;
 import net.elytrium.fastmotd.FastMOTD;
 import net.elytrium.fastmotd.Settings;
+import net.elytrium.fastmotd.holder.LegacyPingBytesHolder;
+import net.elytrium.fastmotd.holder.MOTDSnapshot;
+import net.elytrium.fastmotd.jfr.ImproperOrderEvent;
+import net.elytrium.fastmotd.jfr.StatusServedEvent;
+import net.elytrium.fastmotd.utils.OffenderList;
+import net.elytrium.fastmotd.utils.PingMetrics;
+import net.elytrium.fastmotd.utils.StatusSocketProfile;
+import net.elytrium.fastmotd.utils.StatusTimeouts;
 
-public class HandshakeSessionHandlerHook extends HandshakeSessionHandler {
+/**
+ * Status part of the handshake handler. Settings which are checked on every packet are resolved once per reload
+ * by {@link #factory()}, which picks the subclass for the active combination, so the per-packet path has no config branches.
+ */
+public abstract class HandshakeSessionHandlerHook extends HandshakeSessionHandler implements TimerTask {
 
   private static final QuietRuntimeException UNEXPECTED_STATE =
       new QuietRuntimeException("unexpected state");
+  // The same message as Velocity sends, pre-1.7 clients cannot join anyway
+  private static final ByteBuf LEGACY_HANDSHAKE_KICK = Unpooled.unreleasableBuffer(
+      LegacyPingBytesHolder.createKick("Your client is extremely old. Please update to a newer version of Minecraft."));
 
   private enum State {
     REQUEST, PING, DONE
@@ -53,41 +72,96 @@ public class HandshakeSessionHandlerHook extends HandshakeSessionHandler {
   private final MinecraftConnection connection;
   private final Channel channel;
   private final HandshakeSessionHandler original;
+  private final boolean logPings;
+  private final boolean logImproperPings;
+  private final boolean answerLegacyPings;
+  private final boolean kickOnJoin;
+  private final int statusTimeoutMillis;
+  private final StatusSocketProfile socketProfile;
+  private final String writePath;
+  private final long acceptedAt;
   private ProtocolVersion protocolVersion;
-  private String serverAddress;
+  private String serverHostname;
+  private int serverPort;
   private State state = State.REQUEST;
+  private Timeout statusTimeout;
+  private boolean flushPending;
 
-  public HandshakeSessionHandlerHook(FastMOTD plugin, MinecraftConnection connection, Channel channel, HandshakeSessionHandler original) {
+  private HandshakeSessionHandlerHook(FastMOTD plugin, MinecraftConnection connection, Channel channel, HandshakeSessionHandler original,
+                                      long acceptedAt, Options options) {
     super(connection, plugin.getServer());
     this.plugin = plugin;
     this.connection = connection;
     this.channel = channel;
     this.original = original;
+    this.logPings = options.logPings();
+    this.logImproperPings = options.logImproperPings();
+    this.answerLegacyPings = options.answerLegacyPings();
+    this.kickOnJoin = options.kickOnJoin();
+    this.statusTimeoutMillis = options.statusTimeout();
+    this.socketProfile = options.socketProfile();
+    this.writePath = options.directWrite() ? "direct" : "pipeline";
+    this.acceptedAt = acceptedAt;
   }
 
-  private static String cleanHost(String hostname) {
-    String cleaned = hostname;
-    int zeroIdx = cleaned.indexOf(0);
-    if (zeroIdx > -1) {
-      cleaned = hostname.substring(0, zeroIdx);
-    }
+  /**
+   * Returns the factory used while the flood profile is active, the packet order is always checked.
+   */
+  public static Factory floodFactory() {
+    return factory(false);
+  }
+
+  /**
+   * Returns the factory of the hooks specialized for the current settings, it has to be obtained again after every reload.
+   */
+  public static Factory factory() {
+    return factory(Settings.IMP.MAIN.ALLOW_IMPROPER_PINGS);
+  }
 
-    if (!cleaned.isEmpty() && cleaned.charAt(cleaned.length() - 1) == '.') {
-      cleaned = cleaned.substring(0, cleaned.length() - 1);
+  private static Factory factory(boolean allowImproperPings) {
+    Options options = Options.fromSettings();
+    if (Settings.IMP.MAIN.DIRECT_WRITE) {
+      return allowImproperPings
+          ? (plugin, connection, channel, original, acceptedAt) -> new DirectLenient(plugin, connection, channel, original, acceptedAt, options)
+          : (plugin, connection, channel, original, acceptedAt) -> new DirectOrdered(plugin, connection, channel, original, acceptedAt, options);
+    } else {
+      return allowImproperPings
+          ? (plugin, connection, channel, original, acceptedAt) -> new PipelineLenient(plugin, connection, channel, original, acceptedAt, options)
+          : (plugin, connection, channel, original, acceptedAt) -> new PipelineOrdered(plugin, connection, channel, original, acceptedAt, options);
     }
+  }
 
-    return cleaned;
+  /**
+   * Returns the factory of the hooks which read DIRECT_WRITE and ALLOW_IMPROPER_PINGS on every packet,
+   * as before the specialization. It is the baseline of the benchmarks and is not used by the plugin.
+   */
+  static Factory genericFactory() {
+    Options options = Options.fromSettings();
+    return (plugin, connection, channel, original, acceptedAt) -> new Generic(plugin, connection, channel, original, acceptedAt, options);
   }
 
-  private void switchState(State oldState, State newState) {
-    if (Settings.IMP.MAIN.ALLOW_IMPROPER_PINGS) {
-      return;
-    }
+  abstract void switchState(State oldState, State newState);
+
+  /**
+   * Adds the packet to the outbound buffer without flushing it.
+   */
+  abstract void write(ByteBuf packet, boolean constant, ChannelPromise promise);
 
+  final void checkOrder(State oldState, State newState) {
     if (this.state != oldState) {
-      if (Settings.IMP.MAIN.LOG_IMPROPER_PINGS) {
-        this.plugin.getLogger().warn("{} has failed to ping this proxy due to improper packet order: from {} to {}->{}",
-            this.connection.getRemoteAddress(), this.state, oldState, newState);
+      if (this.logImproperPings) {
+        this.plugin.getPingLog().improperOrder(this.connection.getRemoteAddress(), this.state, oldState, newState);
+      }
+
+      PingMetrics.increment(PingMetrics.Event.IMPROPER_ORDER);
+      ImproperOrderEvent event = new ImproperOrderEvent();
+      if (event.isEnabled()) {
+        event.commit(String.valueOf(this.connection.getRemoteAddress()), this.state.name(), oldState + "->" + newState);
+      }
+
+      OffenderList offenders = this.plugin.getOffenderList();
+      if (offenders != null && this.connection.getRemoteAddress() instanceof InetSocketAddress address) {
+        offenders.record(address.getAddress());
       }
 
       throw UNEXPECTED_STATE;
@@ -96,35 +170,110 @@ public class HandshakeSessionHandlerHook extends HandshakeSessionHandler {
     this.state = newState;
   }
 
-  private void sendPacket(ByteBuf packet, boolean constant) {
-    if (Settings.IMP.MAIN.DIRECT_WRITE) {
-      ChannelOutboundBuffer buffer = this.channel.unsafe().outboundBuffer();
-      if (buffer == null) {
-        packet.release(); // connection was closed already, no need to send the packet.
-      } else {
-        // .slice() constant packet to ensure that Netty do not modify its readerIndex
-        if (constant) {
-          packet = packet.slice();
-        }
-
-        // Send the packet
-        buffer.addMessage(packet, packet.readableBytes(), this.channel.voidPromise());
-        this.channel.flush();
+  final void writeDirect(ByteBuf packet, boolean constant, ChannelPromise promise) {
+    ChannelOutboundBuffer buffer = this.channel.unsafe().outboundBuffer();
+    if (buffer == null) {
+      packet.release(); // connection was closed already, no need to send the packet.
+      if (!promise.isVoid()) {
+        promise.trySuccess();
       }
     } else {
-      this.channel.writeAndFlush(packet);
+      // .slice() constant packet to ensure that Netty do not modify its readerIndex
+      if (constant) {
+        packet = packet.slice();
+      }
+
+      // Send the packet
+      buffer.addMessage(packet, packet.readableBytes(), promise);
+    }
+  }
+
+  final void writePipeline(ByteBuf packet, ChannelPromise promise) {
+    this.channel.write(packet, promise);
+  }
+
+  private void sendPacket(ByteBuf packet, boolean constant) {
+    this.sendPacket(packet, constant, true);
+  }
+
+  /**
+   * Writes the packet, it is flushed along with everything written before it if flush is true,
+   * otherwise on the next flushing write or when the current read is completed.
+   */
+  private void sendPacket(ByteBuf packet, boolean constant, boolean flush) {
+    this.write(packet, constant, this.channel.voidPromise());
+    if (flush) {
+      this.channel.flush();
+    }
+
+    this.flushPending = !flush;
+  }
+
+  /**
+   * Writes and flushes the last packet, the connection is reset and closed only after everything has been written,
+   * as SO_LINGER=0 discards the bytes which are still queued.
+   */
+  private void sendAndClose(ByteBuf packet, boolean constant) {
+    ChannelPromise promise = this.channel.newPromise().addListener(future -> {
+      this.socketProfile.resetOnClose(this.channel);
+      this.connection.close();
+    });
+    this.write(packet, constant, promise);
+    this.channel.flush();
+    this.flushPending = false;
+  }
+
+  private void removeFrameEncoder() {
+    ChannelPipeline pipeline = this.channel.pipeline();
+    if (pipeline.get(Connections.FRAME_ENCODER) != null) {
+      pipeline.remove(Connections.FRAME_ENCODER);
+    }
+  }
+
+  private void flushPending() {
+    if (this.flushPending) {
+      this.flushPending = false;
+      this.channel.flush();
+      PingMetrics.recordLatency(PingMetrics.Latency.STATUS_RESPONSE, this.acceptedAt);
     }
   }
 
   @Override
   public boolean handle(LegacyPingPacket packet) {
-    this.connection.close();
+    if (this.answerLegacyPings) {
+      if (this.logPings) {
+        this.plugin.getPingLog().legacyPing(this.connection.getRemoteAddress(), packet.getVersion());
+      }
+
+      this.removeFrameEncoder();
+      InetSocketAddress virtualHost = packet.getVhost();
+      boolean beta = packet.getVersion() == LegacyMinecraftPingVersion.MINECRAFT_1_3;
+      // Only 1.6 clients send their protocol
+      int protocol = packet.getVersion() == LegacyMinecraftPingVersion.MINECRAFT_1_6
+          ? LegacyProtocolReader.getProtocol(this.channel)
+          : LegacyPingBytesHolder.NO_PROTOCOL;
+      this.sendAndClose(virtualHost == null
+          ? this.plugin.getNextLegacy(beta, protocol, null, 0)
+          : this.plugin.getNextLegacy(beta, protocol, virtualHost.getHostString(), virtualHost.getPort()), true);
+    } else {
+      this.connection.close();
+    }
+
     return true;
   }
 
+  /**
+   * Kicks the pre-1.7 client trying to join, as Velocity does, but with a precomputed packet.
+   */
   @Override
   public boolean handle(LegacyHandshakePacket packet) {
-    this.connection.close();
+    if (this.answerLegacyPings) {
+      this.removeFrameEncoder();
+      this.sendAndClose(LEGACY_HANDSHAKE_KICK.duplicate(), false);
+    } else {
+      this.connection.close();
+    }
+
     return true;
   }
 
@@ -134,17 +283,15 @@ public class HandshakeSessionHandlerHook extends HandshakeSessionHandler {
       if (handshake.getProtocolVersion() == null || handshake.getProtocolVersion() == ProtocolVersion.UNKNOWN) {
         handshake.setProtocolVersion(ProtocolVersion.MAXIMUM_VERSION);
 
-        if (Settings.IMP.MAIN.LOG_PINGS) {
-          this.plugin.getLogger().info(
-              "Unknown protocol version detected from {}, replaced with version {}",
-              this.connection.getRemoteAddress(),
-              ProtocolVersion.MAXIMUM_VERSION
-          );
+        if (this.logPings) {
+          this.plugin.getPingLog().unknownProtocol(this.connection.getRemoteAddress());
         }
       }
 
       this.protocolVersion = handshake.getProtocolVersion();
-      this.serverAddress = cleanHost(handshake.getServerAddress()) + ":" + handshake.getPort();
+      // The FML marker and the trailing dot are skipped by the domain matcher
+      this.serverHostname = handshake.getServerAddress();
+      this.serverPort = handshake.getPort();
 
       ChannelPipeline pipeline = this.channel.pipeline();
       pipeline.remove(Connections.FRAME_ENCODER);
@@ -154,17 +301,22 @@ public class HandshakeSessionHandlerHook extends HandshakeSessionHandler {
         frameDecoder.setState(StateRegistry.STATUS);
       }
 
-      if (Settings.IMP.MAIN.LOG_PINGS) {
-        this.plugin.getLogger().info("{} is pinging the server with version {}", this.connection.getRemoteAddress(), this.protocolVersion);
+      if (this.logPings) {
+        this.plugin.getPingLog().ping(this.connection.getRemoteAddress(), this.protocolVersion);
       }
+
+      this.socketProfile.applyToStatus(this.channel);
+      this.statusTimeout = StatusTimeouts.schedule(this, this.statusTimeoutMillis);
       return true;
-    } else if (handshake.getNextStatus() == StateRegistry.LOGIN_ID
-        && Settings.IMP.MAINTENANCE.MAINTENANCE_ENABLED && Settings.IMP.MAINTENANCE.SHOULD_KICK_ON_JOIN
-        && !this.plugin.checkKickWhitelist(((InetSocketAddress) this.connection.getRemoteAddress()).getAddress())) {
-      this.connection.setProtocolVersion(handshake.getProtocolVersion());
-      this.channel.pipeline().remove(Connections.FRAME_ENCODER);
-      this.plugin.inject(this.connection, this.channel.pipeline());
-      this.connection.closeWith(this.plugin.getKickReason());
+    } else if (handshake.getNextStatus() == StateRegistry.LOGIN_ID && this.kickOnJoin) {
+      MOTDSnapshot snapshot = this.plugin.getSnapshot();
+      if (snapshot.isMaintenance() && !snapshot.checkKickWhitelist(((InetSocketAddress) this.connection.getRemoteAddress()).getAddress())) {
+        this.connection.setProtocolVersion(handshake.getProtocolVersion());
+        this.channel.pipeline().remove(Connections.FRAME_ENCODER);
+        this.plugin.inject(this.connection, this.channel.pipeline());
+        this.connection.closeWith(snapshot.getKickReason());
+        PingMetrics.increment(PingMetrics.Event.MAINTENANCE_KICK);
+      }
     }
 
     return this.original.handle(handshake);
@@ -174,20 +326,43 @@ public class HandshakeSessionHandlerHook extends HandshakeSessionHandler {
   public void handleGeneric(MinecraftPacket packet) {
     if (packet instanceof StatusPingPacket) {
       this.switchState(State.PING, State.DONE);
-      if (Settings.IMP.MAINTENANCE.MAINTENANCE_ENABLED) {
-        this.connection.close();
+      StatusTimeouts.cancel(this.statusTimeout);
+      if (this.plugin.getSnapshot().isMaintenance()) {
+        final boolean responsePending = this.flushPending;
+        // The empty buffer completes after the pending response, so the connection is not reset before it is written
+        this.sendAndClose(Unpooled.EMPTY_BUFFER, false);
+        if (responsePending) {
+          PingMetrics.recordLatency(PingMetrics.Latency.STATUS_RESPONSE, this.acceptedAt);
+        }
+
+        PingMetrics.recordLatency(PingMetrics.Latency.PONG, this.acceptedAt);
         return;
       }
 
-      ByteBuf buf = Unpooled.directBuffer(11);
+      // If the request came within the same read, the response has not been flushed yet, so both go in one write
+      final boolean responsePending = this.flushPending;
+      ByteBuf buf = this.channel.alloc().ioBuffer(11);
       buf.writeByte(9);
       buf.writeByte(1);
       packet.encode(buf, null, null);
-      this.sendPacket(buf, false);
-      this.connection.close();
+      this.sendAndClose(buf, false);
+      if (responsePending) {
+        PingMetrics.recordLatency(PingMetrics.Latency.STATUS_RESPONSE, this.acceptedAt);
+      }
+
+      PingMetrics.pong(this.protocolVersion);
+      PingMetrics.recordLatency(PingMetrics.Latency.PONG, this.acceptedAt);
     } else if (packet instanceof StatusRequestPacket) {
       this.switchState(State.REQUEST, State.PING);
-      this.sendPacket(this.plugin.getNext(this.protocolVersion, this.serverAddress), true);
+      StatusServedEvent event = new StatusServedEvent();
+      event.begin();
+      ByteBuf response = this.plugin.getNext(this.protocolVersion, this.serverHostname, this.serverPort);
+      int bytes = response.readableBytes();
+      // Pipelining clients send the ping along with the request, the response is flushed with the pong or on read completion
+      this.sendPacket(response, true, false);
+      if (event.isEnabled()) {
+        event.commit(this.protocolVersion.getProtocol(), this.serverHostname, this.serverPort, bytes, this.writePath);
+      }
     } else {
       this.original.handleGeneric(packet);
     }
@@ -197,4 +372,140 @@ public class HandshakeSessionHandlerHook extends HandshakeSessionHandler {
   public void handleUnknown(ByteBuf buf) {
     this.original.handleUnknown(buf);
   }
+
+  @Override
+  public void readCompleted() {
+    this.flushPending();
+    this.original.readCompleted();
+  }
+
+  @Override
+  public void disconnected() {
+    StatusTimeouts.cancel(this.statusTimeout);
+    this.original.disconnected();
+  }
+
+  @Override
+  public void run(Timeout timeout) {
+    this.channel.eventLoop().execute(() -> {
+      this.socketProfile.resetOnClose(this.channel);
+      this.channel.close();
+    });
+  }
+
+  @FunctionalInterface
+  public interface Factory {
+
+    /**
+     * The accept time is the one returned by {@link PingMetrics#startSample()}.
+     */
+    HandshakeSessionHandlerHook create(FastMOTD plugin, MinecraftConnection connection, Channel channel, HandshakeSessionHandler original,
+                                       long acceptedAt);
+  }
+
+  private record Options(boolean logPings, boolean logImproperPings, boolean answerLegacyPings, boolean directWrite,
+                         boolean kickOnJoin, int statusTimeout, StatusSocketProfile socketProfile) {
+
+    private static Options fromSettings() {
+      return new Options(Settings.IMP.MAIN.LOG_PINGS, Settings.IMP.MAIN.LOG_IMPROPER_PINGS, Settings.IMP.MAIN.ANSWER_LEGACY_PINGS,
+          Settings.IMP.MAIN.DIRECT_WRITE, Settings.IMP.MAINTENANCE.SHOULD_KICK_ON_JOIN, Settings.IMP.MAIN.STATUS_TIMEOUT,
+          StatusSocketProfile.fromSettings());
+    }
+  }
+
+  private static final class DirectOrdered extends HandshakeSessionHandlerHook {
+
+    private DirectOrdered(FastMOTD plugin, MinecraftConnection connection, Channel channel, HandshakeSessionHandler original,
+                          long acceptedAt, Options options) {
+      super(plugin, connection, channel, original, acceptedAt, options);
+    }
+
+    @Override
+    void switchState(State oldState, State newState) {
+      this.checkOrder(oldState, newState);
+    }
+
+    @Override
+    void write(ByteBuf packet, boolean constant, ChannelPromise promise) {
+      this.writeDirect(packet, constant, promise);
+    }
+  }
+
+  private static final class DirectLenient extends HandshakeSessionHandlerHook {
+
+    private DirectLenient(FastMOTD plugin, MinecraftConnection connection, Channel channel, HandshakeSessionHandler original,
+                          long acceptedAt, Options options) {
+      super(plugin, connection, channel, original, acceptedAt, options);
+    }
+
+    @Override
+    void switchState(State oldState, State newState) {
+      // Improper pings are allowed, the order is not tracked
+    }
+
+    @Override
+    void write(ByteBuf packet, boolean constant, ChannelPromise promise) {
+      this.writeDirect(packet, constant, promise);
+    }
+  }
+
+  private static final class PipelineOrdered extends HandshakeSessionHandlerHook {
+
+    private PipelineOrdered(FastMOTD plugin, MinecraftConnection connection, Channel channel, HandshakeSessionHandler original,
+                            long acceptedAt, Options options) {
+      super(plugin, connection, channel, original, acceptedAt, options);
+    }
+
+    @Override
+    void switchState(State oldState, State newState) {
+      this.checkOrder(oldState, newState);
+    }
+
+    @Override
+    void write(ByteBuf packet, boolean constant, ChannelPromise promise) {
+      this.writePipeline(packet, promise);
+    }
+  }
+
+  private static final class PipelineLenient extends HandshakeSessionHandlerHook {
+
+    private PipelineLenient(FastMOTD plugin, MinecraftConnection connection, Channel channel, HandshakeSessionHandler original,
+                            long acceptedAt, Options options) {
+      super(plugin, connection, channel, original, acceptedAt, options);
+    }
+
+    @Override
+    void switchState(State oldState, State newState) {
+      // Improper pings are allowed, the order is not tracked
+    }
+
+    @Override
+    void write(ByteBuf packet, boolean constant, ChannelPromise promise) {
+      this.writePipeline(packet, promise);
+    }
+  }
+
+  private static final class Generic extends HandshakeSessionHandlerHook {
+
+    private Generic(FastMOTD plugin, MinecraftConnection connection, Channel channel, HandshakeSessionHandler original,
+                    long acceptedAt, Options options) {
+      super(plugin, connection, channel, original, acceptedAt, options);
+    }
+
+    @Override
+    void switchState(State oldState, State newState) {
+      if (!Settings.IMP.MAIN.ALLOW_IMPROPER_PINGS) {
+        this.checkOrder(oldState, newState);
+      }
+    }
+
+    @Override
+    void write(ByteBuf packet, boolean constant, ChannelPromise promise) {
+      if (Settings.IMP.MAIN.DIRECT_WRITE) {
+        this.writeDirect(packet, constant, promise);
+      } else {
+        this.writePipeline(packet, promise);
+      }
+    }
+  }
 }
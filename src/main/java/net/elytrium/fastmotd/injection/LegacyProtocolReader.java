@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.injection;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.AttributeKey;
+import net.elytrium.fastmotd.holder.LegacyPingBytesHolder;
+
+/**
+ * Peeks at the first bytes of a connection for the protocol a 1.6 client sends in MC|PingHost,
+ * as Velocity's legacy ping decoder skips it, then removes itself. The ping has to come in the first read.
+ */
+@ChannelHandler.Sharable
+public final class LegacyProtocolReader extends ChannelInboundHandlerAdapter {
+
+  public static final String NAME = "fastmotd-legacy-protocol";
+  public static final LegacyProtocolReader INSTANCE = new LegacyProtocolReader();
+
+  private static final AttributeKey<Integer> PROTOCOL = AttributeKey.valueOf(NAME);
+  // 0xFE 0x01 0xFA, the length of "MC|PingHost", the channel name in UTF-16BE and the length of the data
+  private static final int PROTOCOL_INDEX = 3 + Short.BYTES + 11 * Character.BYTES + Short.BYTES;
+
+  private LegacyProtocolReader() {
+
+  }
+
+  /**
+   * Returns the protocol of the 1.6 ping received by the channel, or {@link LegacyPingBytesHolder#NO_PROTOCOL}.
+   */
+  public static int getProtocol(Channel channel) {
+    Integer protocol = channel.hasAttr(PROTOCOL) ? channel.attr(PROTOCOL).get() : null;
+    return protocol == null ? LegacyPingBytesHolder.NO_PROTOCOL : protocol;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) {
+    if (msg instanceof ByteBuf in && in.readableBytes() > PROTOCOL_INDEX) {
+      int start = in.readerIndex();
+      if (in.getUnsignedByte(start) == 0xFE && in.getUnsignedByte(start + 1) == 0x01 && in.getUnsignedByte(start + 2) == 0xFA) {
+        ctx.channel().attr(PROTOCOL).set((int) in.getUnsignedByte(start + PROTOCOL_INDEX));
+      }
+    }
+
+    ctx.pipeline().remove(this);
+    ctx.fireChannelRead(msg);
+  }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.injection;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import com.velocitypowered.proxy.protocol.StateRegistry;
+import com.velocitypowered.proxy.util.except.QuietDecoderException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import net.elytrium.fastmotd.FastMOTD;
+import net.elytrium.fastmotd.Settings;
+import net.elytrium.fastmotd.jfr.ImproperOrderEvent;
+import net.elytrium.fastmotd.jfr.StatusServedEvent;
+import net.elytrium.fastmotd.utils.OffenderList;
+import net.elytrium.fastmotd.utils.PingMetrics;
+import net.elytrium.fastmotd.utils.StatusSocketProfile;
+import net.elytrium.fastmotd.utils.StatusTimeouts;
+
+/**
+ * Answers status pings straight from the inbound bytes, so no MinecraftConnection is created for them.
+ * As soon as the handshake turns out to be anything but a status request, Velocity's own initializer
+ * is invoked and the received bytes are replayed into the freshly built pipeline.
+ */
+public class RawStatusHandler extends ByteToMessageDecoder implements TimerTask {
+
+  public static final String NAME = "fastmotd-raw-status";
+  public static final String READ_TIMEOUT = "fastmotd-read-timeout";
+
+  private static final QuietDecoderException BAD_FRAME = new QuietDecoderException("bad frame");
+  private static final QuietDecoderException UNEXPECTED_STATE = new QuietDecoderException("unexpected state");
+
+  // Handshake is: packet id, protocol (5 bytes max), hostname (255 chars + FML marker) and port. Anything bigger goes to Velocity.
+  private static final int MAX_HOSTNAME_LENGTH = 255 * 4 + 16;
+  private static final int MAX_HANDSHAKE_LENGTH = 1 + 5 + 3 + MAX_HOSTNAME_LENGTH + 2 + 1;
+  private static final int STATUS_REQUEST_LENGTH = 1;
+  private static final int STATUS_PING_LENGTH = 9;
+  private static final int STATUS_REQUEST_ID = 0x00;
+  private static final int STATUS_PING_ID = 0x01;
+
+  private enum State {
+    HANDSHAKE, REQUEST, PING, DONE
+  }
+
+  private final FastMOTD plugin;
+  private final ServerChannelInitializerHook initializer;
+  private final long acceptedAt;
+  private final StatusSocketProfile socketProfile;
+  private final int statusTimeoutMillis;
+  private final boolean logPings;
+  private final boolean logImproperPings;
+  private final boolean allowImproperPings;
+  private ProtocolVersion protocolVersion;
+  private ByteBuf serverHostname;
+  private int serverPort;
+  private State state = State.HANDSHAKE;
+  private Channel channel;
+  private Timeout statusTimeout;
+  private boolean flushPending;
+
+  public RawStatusHandler(FastMOTD plugin, ServerChannelInitializerHook initializer, long acceptedAt) {
+    this.plugin = plugin;
+    this.initializer = initializer;
+    this.acceptedAt = acceptedAt;
+    this.socketProfile = plugin.getStatusSocketProfile();
+    // Read once per connection instead of on every packet
+    this.statusTimeoutMillis = Settings.IMP.MAIN.STATUS_TIMEOUT;
+    this.logPings = Settings.IMP.MAIN.LOG_PINGS;
+    this.logImproperPings = Settings.IMP.MAIN.LOG_IMPROPER_PINGS;
+    this.allowImproperPings = Settings.IMP.MAIN.ALLOW_IMPROPER_PINGS && !plugin.isUnderAttack();
+  }
+
+  // Returns -1 if the VarInt is not fully received yet
+  private static int readFrameLength(ByteBuf in) {
+    int result = 0;
+    for (int i = 0; i < 3; ++i) {
+      if (!in.isReadable()) {
+        return -1;
+      }
+
+      byte read = in.readByte();
+      result |= (read & 0x7F) << (i * 7);
+      if ((read & 0x80) == 0) {
+        return result;
+      }
+    }
+
+    throw BAD_FRAME;
+  }
+
+  @Override
+  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+    while (in.isReadable() && !ctx.isRemoved() && this.state != State.DONE) {
+      int start = in.readerIndex();
+      if (this.state == State.HANDSHAKE) {
+        short first = in.getUnsignedByte(start);
+        if (first == 0xFE || first == 0x02) {
+          // Legacy ping or legacy handshake, let Velocity handle it
+          this.fallback(ctx);
+          return;
+        }
+      }
+
+      int length = readFrameLength(in);
+      if (length == -1) {
+        in.readerIndex(start);
+        return;
+      }
+
+      if (this.state == State.HANDSHAKE && length > MAX_HANDSHAKE_LENGTH) {
+        in.readerIndex(start);
+        this.fallback(ctx);
+        return;
+      }
+
+      if (in.readableBytes() < length) {
+        in.readerIndex(start);
+        return;
+      }
+
+      if (this.state == State.HANDSHAKE) {
+        if (!this.handleHandshake(in.readSlice(length))) {
+          in.readerIndex(start);
+          this.fallback(ctx);
+          return;
+        }
+
+        this.channel = ctx.channel();
+        this.socketProfile.applyToStatus(this.channel);
+        this.statusTimeout = StatusTimeouts.schedule(this, this.statusTimeoutMillis);
+        if (this.statusTimeout != null) {
+          // The status deadline is shorter, no need to keep a task on the event loop as well
+          ctx.pipeline().remove(READ_TIMEOUT);
+        }
+      } else {
+        this.handleStatus(ctx, in, start, length);
+      }
+    }
+  }
+
+  private boolean handleHandshake(ByteBuf frame) {
+    if (ProtocolUtils.readVarInt(frame) != 0x00) {
+      return false;
+    }
+
+    final int protocol = ProtocolUtils.readVarInt(frame);
+    int hostnameLength = ProtocolUtils.readVarInt(frame);
+    if (hostnameLength < 0 || hostnameLength > MAX_HOSTNAME_LENGTH || frame.readableBytes() < hostnameLength + 3) {
+      return false;
+    }
+
+    final int hostnameIndex = frame.readerIndex();
+    frame.skipBytes(hostnameLength);
+    final int port = frame.readUnsignedShort();
+    if (ProtocolUtils.readVarInt(frame) != StateRegistry.STATUS_ID) {
+      return false;
+    }
+
+    this.protocolVersion = ProtocolVersion.getProtocolVersion(protocol);
+    if (this.protocolVersion == ProtocolVersion.UNKNOWN) {
+      this.protocolVersion = ProtocolVersion.MAXIMUM_VERSION;
+    }
+
+    // Matched as raw bytes by the domain matcher, the FML marker and the trailing dot are skipped there.
+    // The cumulation is never compacted while the slice holds a reference to it. It is kept until the ping,
+    // as a lenient client may send the status request again and has to get the same route.
+    this.serverHostname = frame.retainedSlice(hostnameIndex, hostnameLength);
+    this.serverPort = port;
+    this.state = State.REQUEST;
+    return true;
+  }
+
+  private void handleStatus(ChannelHandlerContext ctx, ByteBuf in, int start, int length) {
+    int packetId = length == 0 ? -1 : in.getUnsignedByte(in.readerIndex());
+    if (length == STATUS_REQUEST_LENGTH && packetId == STATUS_REQUEST_ID) {
+      in.skipBytes(length);
+      this.switchState(ctx, State.REQUEST, State.PING);
+      if (this.logPings) {
+        this.plugin.getPingLog().ping(ctx.channel().remoteAddress(), this.protocolVersion);
+      }
+
+      StatusServedEvent event = new StatusServedEvent();
+      event.begin();
+      // .slice() constant packet to ensure that Netty do not modify its readerIndex
+      ByteBuf response = this.plugin.getNext(this.protocolVersion, this.serverHostname, this.serverPort);
+      // Pipelining clients send the ping along with the request, the response is flushed with the pong or on read completion
+      ctx.write(response.slice(), ctx.voidPromise());
+      this.flushPending = true;
+      if (event.isEnabled()) {
+        event.commit(this.protocolVersion.getProtocol(), this.serverHostname == null ? "" : this.serverHostname.toString(StandardCharsets.UTF_8),
+            this.serverPort, response.readableBytes(), "raw");
+      }
+    } else if (length == STATUS_PING_LENGTH && packetId == STATUS_PING_ID) {
+      this.switchState(ctx, State.PING, State.DONE);
+      this.state = State.DONE;
+      this.releaseHostname();
+      StatusTimeouts.cancel(this.statusTimeout);
+      if (this.plugin.getSnapshot().isMaintenance()) {
+        in.skipBytes(length);
+        // The empty buffer completes after the pending response, so the connection is not reset before it is written
+        ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(future -> {
+          this.socketProfile.resetOnClose(ctx.channel());
+          ctx.close();
+        });
+        if (this.flushPending) {
+          this.flushPending = false;
+          PingMetrics.recordLatency(PingMetrics.Latency.STATUS_RESPONSE, this.acceptedAt);
+        }
+
+        PingMetrics.recordLatency(PingMetrics.Latency.PONG, this.acceptedAt);
+        return;
+      }
+
+      PingMetrics.pong(this.protocolVersion);
+      // The pong is byte-to-byte identical to the ping frame, so just send it back
+      int frameLength = in.readerIndex() - start + length;
+      in.readerIndex(start);
+      ctx.writeAndFlush(in.readRetainedSlice(frameLength)).addListener(future -> {
+        this.socketProfile.resetOnClose(ctx.channel());
+        ctx.close();
+      });
+      // If the request came within the same read, the response was flushed along with the pong
+      if (this.flushPending) {
+        this.flushPending = false;
+        PingMetrics.recordLatency(PingMetrics.Latency.STATUS_RESPONSE, this.acceptedAt);
+      }
+
+      PingMetrics.recordLatency(PingMetrics.Latency.PONG, this.acceptedAt);
+    } else {
+      this.improperOrder(ctx, "packet " + packetId + " of " + length + " bytes");
+      throw UNEXPECTED_STATE;
+    }
+  }
+
+  private void improperOrder(ChannelHandlerContext ctx, String transition) {
+    PingMetrics.increment(PingMetrics.Event.IMPROPER_ORDER);
+    ImproperOrderEvent event = new ImproperOrderEvent();
+    if (event.isEnabled()) {
+      event.commit(String.valueOf(ctx.channel().remoteAddress()), this.state.name(), transition);
+    }
+
+    OffenderList offenders = this.plugin.getOffenderList();
+    if (offenders != null && ctx.channel().remoteAddress() instanceof InetSocketAddress address) {
+      offenders.record(address.getAddress());
+    }
+  }
+
+  private void flushPending(ChannelHandlerContext ctx) {
+    if (this.flushPending) {
+      this.flushPending = false;
+      ctx.flush();
+      PingMetrics.recordLatency(PingMetrics.Latency.STATUS_RESPONSE, this.acceptedAt);
+    }
+  }
+
+  @Override
+  public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+    this.flushPending(ctx);
+    super.channelReadComplete(ctx);
+  }
+
+  private void switchState(ChannelHandlerContext ctx, State oldState, State newState) {
+    if (this.allowImproperPings) {
+      return;
+    }
+
+    if (this.state != oldState) {
+      if (this.logImproperPings) {
+        this.plugin.getPingLog().improperOrder(ctx.channel().remoteAddress(), this.state, oldState, newState);
+      }
+
+      this.improperOrder(ctx, oldState + "->" + newState);
+      throw UNEXPECTED_STATE;
+    }
+
+    this.state = newState;
+  }
+
+  private void fallback(ChannelHandlerContext ctx) {
+    this.initializer.initVelocityChannel(ctx.channel(), this.acceptedAt);
+    ctx.pipeline().remove(READ_TIMEOUT);
+    // ByteToMessageDecoder passes the cumulated bytes to the next handler when it gets removed
+    ctx.pipeline().remove(this);
+  }
+
+  private void releaseHostname() {
+    if (this.serverHostname != null) {
+      this.serverHostname.release();
+      this.serverHostname = null;
+    }
+  }
+
+  @Override
+  protected void handlerRemoved0(ChannelHandlerContext ctx) {
+    this.releaseHostname();
+    StatusTimeouts.cancel(this.statusTimeout);
+  }
+
+  @Override
+  public void run(Timeout timeout) {
+    this.channel.eventLoop().execute(() -> {
+      this.socketProfile.resetOnClose(this.channel);
+      this.channel.close();
+    });
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+    ctx.close();
+  }
+}
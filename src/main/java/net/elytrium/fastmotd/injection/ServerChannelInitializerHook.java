@@ -17,18 +17,25 @@
 
 package net.elytrium.fastmotd.injection;
 
+import com.velocitypowered.proxy.config.VelocityConfiguration;
 import com.velocitypowered.proxy.connection.MinecraftConnection;
 import com.velocitypowered.proxy.connection.client.HandshakeSessionHandler;
 import com.velocitypowered.proxy.network.Connections;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
+import io.netty.handler.timeout.ReadTimeoutHandler;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
 import net.elytrium.commons.utils.reflection.ReflectionException;
 import net.elytrium.fastmotd.FastMOTD;
 import net.elytrium.fastmotd.Settings;
+import net.elytrium.fastmotd.utils.ConnectionLimiter;
+import net.elytrium.fastmotd.utils.OffenderList;
+import net.elytrium.fastmotd.utils.PingMetrics;
+import net.elytrium.fastmotd.utils.StatusSocketProfile;
 import org.jetbrains.annotations.NotNull;
 
 public class ServerChannelInitializerHook extends ChannelInitializer<Channel> {
@@ -53,21 +60,58 @@ public class ServerChannelInitializerHook extends ChannelInitializer<Channel> {
 
   @Override
   protected void initChannel(@NotNull Channel ch) {
+    PingMetrics.increment(PingMetrics.Event.ACCEPTED);
+    final long acceptedAt = PingMetrics.startSample();
     if (Settings.IMP.SHUTDOWN_SCHEDULER.SHUTDOWN_SCHEDULER_ENABLED) {
-      if (!Settings.IMP.SHUTDOWN_SCHEDULER.WHITELIST.contains(((InetSocketAddress) ch.remoteAddress()).getAddress().getHostAddress())) {
+      if (!this.plugin.getShutdownWhitelist().contains(((InetSocketAddress) ch.remoteAddress()).getAddress())) {
         ch.close();
         return;
       }
     }
 
+    VelocityConfiguration configuration = this.plugin.getServer().getConfiguration();
+    OffenderList offenders = this.plugin.getOffenderList();
+    // With proxy protocol the remote address is the load balancer, the real one is not known yet
+    if (offenders != null && !configuration.isProxyProtocol() && offenders.isBlocked(((InetSocketAddress) ch.remoteAddress()).getAddress())) {
+      PingMetrics.increment(PingMetrics.Event.OFFENDER_BLOCKED);
+      ch.close();
+      return;
+    }
+
+    ConnectionLimiter limiter = this.plugin.getConnectionLimiter();
+    if (limiter != null && !configuration.isProxyProtocol() && !limiter.tryAcquire(((InetSocketAddress) ch.remoteAddress()).getAddress())) {
+      PingMetrics.increment(PingMetrics.Event.RATE_LIMITED);
+      ch.close();
+      return;
+    }
+
+    StatusSocketProfile.applyToListener(ch);
+    if (Settings.IMP.MAIN.RAW_STATUS_FAST_PATH && !configuration.isProxyProtocol()) {
+      ch.pipeline()
+          .addLast(RawStatusHandler.READ_TIMEOUT, new ReadTimeoutHandler(configuration.getReadTimeout(), TimeUnit.MILLISECONDS))
+          .addLast(RawStatusHandler.NAME, new RawStatusHandler(this.plugin, this, acceptedAt));
+      return;
+    }
+
+    this.initVelocityChannel(ch, acceptedAt);
+  }
+
+  /**
+   * The accept time is the one returned by {@link PingMetrics#startSample()}.
+   */
+  public void initVelocityChannel(Channel ch, long acceptedAt) {
     try {
       initChannel.invokeExact(this.original, ch);
     } catch (Throwable e) {
       throw new ReflectionException(e);
     }
 
+    if (Settings.IMP.MAIN.ANSWER_LEGACY_PINGS) {
+      ch.pipeline().addBefore(Connections.LEGACY_PING_DECODER, LegacyProtocolReader.NAME, LegacyProtocolReader.INSTANCE);
+    }
+
     MinecraftConnection connection = (MinecraftConnection) ch.pipeline().get(Connections.HANDLER);
-    connection.setActiveSessionHandler(connection.getState(), new HandshakeSessionHandlerHook(
-            this.plugin, connection, ch, (HandshakeSessionHandler) connection.getActiveSessionHandler()));
+    connection.setActiveSessionHandler(connection.getState(), this.plugin.getHookFactory().create(
+            this.plugin, connection, ch, (HandshakeSessionHandler) connection.getActiveSessionHandler(), acceptedAt));
   }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.elytrium.fastmotd.ImproperOrder")
+@Label("Improper Packet Order")
+@Category({"FastMOTD", "Ping"})
+@Description("Status connection closed as its packets did not follow the vanilla order")
+@StackTrace(false)
+public class ImproperOrderEvent extends Event {
+
+  @Label("Remote Address")
+  private String address;
+
+  @Label("State")
+  private String state;
+
+  @Label("Transition")
+  @Description("The transition the received packet leads to, or the unexpected packet")
+  private String transition;
+
+  public void commit(String address, String state, String transition) {
+    this.address = address;
+    this.state = state;
+    this.transition = transition;
+    this.commit();
+  }
+}
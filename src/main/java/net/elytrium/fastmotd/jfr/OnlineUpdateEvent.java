@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.elytrium.fastmotd.OnlineUpdate")
+@Label("Online Update")
+@Category("FastMOTD")
+@Description("Pass replacing the online and max counts in every cached response")
+@StackTrace(false)
+public class OnlineUpdateEvent extends Event {
+
+  @Label("Online")
+  private int online;
+
+  @Label("Max")
+  private int max;
+
+  @Label("Holders")
+  @Description("Cached responses rewritten by the pass")
+  private int holders;
+
+  @Label("Bytes Copied")
+  @DataAmount
+  private long bytesCopied;
+
+  public void commit(int online, int max, int holders, long bytesCopied) {
+    this.online = online;
+    this.max = max;
+    this.holders = holders;
+    this.bytesCopied = bytesCopied;
+    this.commit();
+  }
+}
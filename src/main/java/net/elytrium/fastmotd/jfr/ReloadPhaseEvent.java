@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.elytrium.fastmotd.ReloadPhase")
+@Label("Reload Phase")
+@Category("FastMOTD")
+@Description("Phase of the config reload")
+@StackTrace(false)
+public class ReloadPhaseEvent extends Event {
+
+  public static final String FAVICON_CACHE_LOAD = "favicon cache load";
+  public static final String GENERATION = "generation";
+  public static final String FAVICON_CACHE_SAVE = "favicon cache save";
+  public static final String SWAP = "swap";
+
+  @Label("Phase")
+  private String phase;
+
+  public void commit(String phase) {
+    this.phase = phase;
+    this.commit();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.elytrium.fastmotd.StatusServed")
+@Label("Status Served")
+@Category({"FastMOTD", "Ping"})
+@Description("Status response written to a connection, the duration includes the routing and the write")
+@StackTrace(false)
+public class StatusServedEvent extends Event {
+
+  @Label("Protocol")
+  private int protocol;
+
+  @Label("Hostname")
+  @Description("Server address from the handshake, the domain routing is done by it")
+  private String hostname;
+
+  @Label("Port")
+  private int port;
+
+  @Label("Bytes")
+  @DataAmount
+  private int bytes;
+
+  @Label("Write Path")
+  @Description("direct - into the outbound buffer, pipeline - through the channel pipeline, raw - by the raw status handler")
+  private String writePath;
+
+  public void commit(int protocol, String hostname, int port, int bytes, String writePath) {
+    this.protocol = protocol;
+    this.hostname = hostname;
+    this.port = port;
+    this.bytes = bytes;
+    this.writePath = writePath;
+    this.commit();
+  }
+}
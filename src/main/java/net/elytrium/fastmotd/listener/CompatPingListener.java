@@ -20,6 +20,7 @@ package net.elytrium.fastmotd.listener;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.proxy.ProxyPingEvent;
 import com.velocitypowered.api.proxy.InboundConnection;
+import java.net.InetSocketAddress;
 import net.elytrium.fastmotd.FastMOTD;
 
 public class CompatPingListener {
@@ -33,10 +34,9 @@ public class CompatPingListener {
   @Subscribe
   public void onPing(ProxyPingEvent event) {
     InboundConnection connection = event.getConnection();
-    event.setPing(this.plugin.getNextCompat(
-        connection.getProtocolVersion(),
-        connection.getVirtualHost()
-            .map(address -> address.getHostName() + ":" + address.getPort())
-            .orElse(null)));
+    InetSocketAddress virtualHost = connection.getVirtualHost().orElse(null);
+    event.setPing(virtualHost == null
+        ? this.plugin.getNextCompat(connection.getProtocolVersion(), null, 0)
+        : this.plugin.getNextCompat(connection.getProtocolVersion(), virtualHost.getHostString(), virtualHost.getPort()));
   }
 }
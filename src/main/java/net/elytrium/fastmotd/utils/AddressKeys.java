@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+/**
+ * Keys of addresses and subnets in the open-addressed tables. The top bits tell the address family,
+ * so 0 is never a key and free slots can be told apart. IPv4 keys are exact, IPv6 keys are hashes.
+ */
+final class AddressKeys {
+
+  private static final long IPV4 = 1L << 60;
+  private static final long IPV6 = 2L << 60;
+  private static final long KEY_MASK = (1L << 60) - 1;
+
+  private AddressKeys() {
+
+  }
+
+  /**
+   * Returns the key of the subnet of the address with the prefix length of its family, keys of different prefix lengths never match.
+   */
+  static long key(InetAddress address, int ipv4Prefix, int ipv6Prefix) {
+    if (address instanceof Inet4Address) {
+      long bits = (ipv4(address) & 0xFFFFFFFFL) >>> (Integer.SIZE - ipv4Prefix);
+      return IPV4 | ((long) ipv4Prefix << Integer.SIZE) | bits;
+    }
+
+    byte[] bytes = address.getAddress();
+    long high = prefix(readLong(bytes, 0), ipv6Prefix);
+    long low = prefix(readLong(bytes, Long.BYTES), ipv6Prefix - Long.SIZE);
+    return IPV6 | (HashCommon.mix(high ^ HashCommon.mix(low ^ ipv6Prefix)) & KEY_MASK);
+  }
+
+  /**
+   * Returns the bits of an IPv4 address.
+   */
+  static int ipv4(InetAddress address) {
+    // Inet4Address.hashCode() is the address itself, unlike getAddress() it does not allocate
+    return address.hashCode();
+  }
+
+  private static long prefix(long bits, int length) {
+    if (length <= 0) {
+      return 0;
+    }
+
+    return length >= Long.SIZE ? bits : bits & (-1L << (Long.SIZE - length));
+  }
+
+  private static long readLong(byte[] bytes, int offset) {
+    long result = 0;
+    for (int i = 0; i < Long.BYTES; i++) {
+      result = (result << 8) | (bytes[offset + i] & 0xFF);
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import com.google.common.net.InetAddresses;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+
+/**
+ * Matches addresses against IP and CIDR entries like "127.0.0.1", "10.0.0.0/8" or "2001:db8::/32".
+ * Entries are compiled into binary prefix tries, one for IPv4 and one for IPv6, walked bit by bit from the top.
+ * IPv4 addresses are matched without any allocation.
+ */
+public class AddressMatcher {
+
+  private static final AddressMatcher EMPTY = new AddressMatcher(new Trie(), new Trie());
+
+  private final Trie ipv4;
+  private final Trie ipv6;
+
+  private AddressMatcher(Trie ipv4, Trie ipv6) {
+    this.ipv4 = ipv4;
+    this.ipv6 = ipv6;
+  }
+
+  /**
+   * Compiles the entries, invalid ones are skipped silently.
+   */
+  public static AddressMatcher compile(Collection<String> entries) {
+    return compile(entries, NOPLogger.NOP_LOGGER);
+  }
+
+  /**
+   * Compiles the entries, hostnames are not resolved. Invalid entries are skipped with a warning.
+   */
+  public static AddressMatcher compile(Collection<String> entries, Logger logger) {
+    if (entries.isEmpty()) {
+      return EMPTY;
+    }
+
+    Trie ipv4 = new Trie();
+    Trie ipv6 = new Trie();
+    for (String entry : entries) {
+      int slash = entry.indexOf('/');
+      InetAddress address;
+      int prefix;
+      try {
+        address = InetAddresses.forString(slash == -1 ? entry : entry.substring(0, slash));
+        prefix = slash == -1 ? address.getAddress().length * Byte.SIZE : Integer.parseInt(entry.substring(slash + 1));
+      } catch (IllegalArgumentException e) {
+        logger.warn("Skipping invalid whitelist entry {}, only IP addresses and CIDR ranges are supported", entry);
+        continue;
+      }
+
+      byte[] bytes = address.getAddress();
+      if (prefix < 0 || prefix > bytes.length * Byte.SIZE) {
+        logger.warn("Skipping invalid whitelist entry {}, the prefix length is out of range", entry);
+        continue;
+      }
+
+      (address instanceof Inet4Address ? ipv4 : ipv6).add(bytes, prefix);
+    }
+
+    return new AddressMatcher(ipv4, ipv6);
+  }
+
+  public boolean contains(InetAddress address) {
+    if (address instanceof Inet4Address) {
+      if (this.ipv4.isEmpty()) {
+        return false;
+      }
+
+      int bits = AddressKeys.ipv4(address);
+      int node = 0;
+      for (int i = Integer.SIZE - 1; i >= 0; i--) {
+        if (this.ipv4.terminal.get(node)) {
+          return true;
+        }
+
+        node = this.ipv4.children[node * 2 + ((bits >>> i) & 1)];
+        if (node == 0) {
+          return false;
+        }
+      }
+
+      return this.ipv4.terminal.get(node);
+    } else {
+      return !this.ipv6.isEmpty() && this.ipv6.contains(address.getAddress());
+    }
+  }
+
+  private static final class Trie {
+
+    // Two children per node, 0 means no child, as the root is never a child
+    private int[] children = new int[16];
+    private int nodes = 1;
+    private final BitSet terminal = new BitSet();
+
+    private boolean isEmpty() {
+      return this.nodes == 1 && !this.terminal.get(0);
+    }
+
+    private void add(byte[] bytes, int prefix) {
+      int node = 0;
+      for (int i = 0; i < prefix; i++) {
+        int child = node * 2 + bit(bytes, i);
+        int next = this.children[child];
+        if (next == 0) {
+          next = this.nodes++;
+          if (this.nodes * 2 > this.children.length) {
+            this.children = Arrays.copyOf(this.children, this.children.length * 2);
+          }
+
+          this.children[child] = next;
+        }
+
+        node = next;
+      }
+
+      this.terminal.set(node);
+    }
+
+    private boolean contains(byte[] bytes) {
+      int node = 0;
+      for (int i = 0; i < bytes.length * Byte.SIZE; i++) {
+        if (this.terminal.get(node)) {
+          return true;
+        }
+
+        node = this.children[node * 2 + bit(bytes, i)];
+        if (node == 0) {
+          return false;
+        }
+      }
+
+      return this.terminal.get(node);
+    }
+
+    private static int bit(byte[] bytes, int index) {
+      return (bytes[index / Byte.SIZE] >>> (Byte.SIZE - 1 - index % Byte.SIZE)) & 1;
+    }
+  }
+}
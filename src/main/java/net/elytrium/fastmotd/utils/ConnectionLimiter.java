@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token buckets per address and per /24 (IPv4) or /48 (IPv6) subnet.
+ * Every bucket is a single long (GCRA theoretical arrival time) updated by CAS, buckets live in one open-addressed
+ * array of [key, state] pairs. A key is looked up in the whole short probe sequence first, only then it takes the first
+ * free or refilled slot, as a refilled bucket is the same as a new one, nothing has to be reset or evicted explicitly.
+ * If there are no such slots, the bucket is not tracked and the connection is allowed.
+ */
+public class ConnectionLimiter {
+
+  private static final int PROBES = 8;
+
+  private final AtomicLongArray table;
+  private final int mask;
+  private final long origin = System.nanoTime();
+  private final long addressInterval;
+  private final long addressTolerance;
+  private final long subnetInterval;
+  private final long subnetTolerance;
+
+  public ConnectionLimiter(double addressRate, int addressBurst, double subnetRate, int subnetBurst, int size) {
+    int capacity = HashCommon.nextPowerOfTwo(Math.max(size, PROBES));
+    this.table = new AtomicLongArray(capacity * 2);
+    this.mask = capacity - 1;
+    this.addressInterval = (long) (1_000_000_000L / addressRate);
+    this.addressTolerance = this.addressInterval * Math.max(addressBurst - 1, 0);
+    this.subnetInterval = (long) (1_000_000_000L / subnetRate);
+    this.subnetTolerance = this.subnetInterval * Math.max(subnetBurst - 1, 0);
+  }
+
+  /**
+   * Takes a token from both the address and the subnet buckets, returns false if any of them is empty.
+   * The address token is given back if the subnet bucket is empty.
+   */
+  public boolean tryAcquire(InetAddress address) {
+    long now = System.nanoTime() - this.origin;
+    int addressSlot = this.find(AddressKeys.key(address, 32, 128), now);
+    if (addressSlot != -1 && !this.consume(addressSlot, this.addressInterval, this.addressTolerance, now)) {
+      return false;
+    }
+
+    int subnetSlot = this.find(AddressKeys.key(address, 24, 48), now);
+    if (subnetSlot == -1 || this.consume(subnetSlot, this.subnetInterval, this.subnetTolerance, now)) {
+      return true;
+    }
+
+    if (addressSlot != -1) {
+      this.table.getAndAdd(addressSlot, -this.addressInterval);
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns the index of the bucket state of the key, or -1 if the key is not tracked.
+   */
+  private int find(long key, long now) {
+    int start = (int) HashCommon.mix(key);
+    int free = -1;
+    long freeKey = 0;
+    for (int i = 0; i < PROBES; i++) {
+      int slot = ((start + i) & this.mask) << 1;
+      long current = this.table.get(slot);
+      if (current == key) {
+        return slot + 1;
+      }
+
+      if (free == -1 && (current == 0 || this.table.get(slot + 1) <= now)) {
+        free = slot;
+        freeKey = current;
+      }
+
+      if (current == 0) {
+        break;
+      }
+    }
+
+    // The key is looked up before a free slot is taken, so it never gets a second bucket. A lost race leaves it untracked
+    return free != -1 && this.table.compareAndSet(free, freeKey, key) ? free + 1 : -1;
+  }
+
+  private boolean consume(int slot, long interval, long tolerance, long now) {
+    while (true) {
+      long state = this.table.get(slot);
+      long arrival = Math.max(state, now);
+      if (arrival - now > tolerance) {
+        return false;
+      }
+
+      if (this.table.compareAndSet(slot, state, arrival + interval)) {
+        return true;
+      }
+    }
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+
+/**
+ * Matches hostnames against patterns like "example.com:25565", "*.example.com:25565" or "play.example.com" (any port).
+ * Patterns are compiled into a trie of reversed hostnames, so both the decoded and the raw handshake hostname
+ * are matched byte by byte from the end without any allocation. The FML marker (everything after \0)
+ * and a trailing dot are ignored, the comparison is ASCII case-insensitive.
+ * An exact pattern wins over a wildcard, a longer wildcard wins over a shorter one, an exact port wins over any port.
+ */
+public class DomainMatcher<T> {
+
+  private static final int ANY_PORT = -1;
+
+  private final Node root;
+
+  private DomainMatcher(Node root) {
+    this.root = root;
+  }
+
+  public boolean isEmpty() {
+    return this.root.children.length == 0;
+  }
+
+  /**
+   * Returns the value of the best matching pattern, or null if nothing matches.
+   */
+  public T match(CharSequence hostname, int port) {
+    if (hostname == null || this.isEmpty()) {
+      return null;
+    }
+
+    int end = hostname.length();
+    for (int i = 0; i < end; i++) {
+      if (hostname.charAt(i) == 0) {
+        end = i;
+        break;
+      }
+    }
+
+    if (end != 0 && hostname.charAt(end - 1) == '.') {
+      --end;
+    }
+
+    Node node = this.root;
+    Object wildcard = null;
+    for (int i = end - 1; i >= 0; i--) {
+      char c = hostname.charAt(i);
+      if (c > 0x7F) {
+        return this.cast(wildcard);
+      }
+
+      if (c == '.' && i != 0) {
+        wildcard = this.wildcard(node, port, wildcard);
+      }
+
+      node = node.child(lowerCase((byte) c));
+      if (node == null) {
+        return this.cast(wildcard);
+      }
+    }
+
+    Object exact = find(node.exactPorts, node.exactValues, port);
+    return this.cast(exact == null ? wildcard : exact);
+  }
+
+  /**
+   * Same as {@link #match(CharSequence, int)}, but reads the readable bytes of the UTF-8 hostname.
+   */
+  public T match(ByteBuf hostname, int port) {
+    if (hostname == null || this.isEmpty()) {
+      return null;
+    }
+
+    int start = hostname.readerIndex();
+    int end = hostname.indexOf(start, hostname.writerIndex(), (byte) 0);
+    if (end == -1) {
+      end = hostname.writerIndex();
+    }
+
+    if (end != start && hostname.getByte(end - 1) == '.') {
+      --end;
+    }
+
+    Node node = this.root;
+    Object wildcard = null;
+    for (int i = end - 1; i >= start; i--) {
+      byte b = hostname.getByte(i);
+      if (b == '.' && i != start) {
+        wildcard = this.wildcard(node, port, wildcard);
+      }
+
+      // Non-ASCII bytes are negative and never match, as patterns are ASCII-only
+      node = node.child(lowerCase(b));
+      if (node == null) {
+        return this.cast(wildcard);
+      }
+    }
+
+    Object exact = find(node.exactPorts, node.exactValues, port);
+    return this.cast(exact == null ? wildcard : exact);
+  }
+
+  private Object wildcard(Node node, int port, Object previous) {
+    Object wildcard = find(node.wildcardPorts, node.wildcardValues, port);
+    return wildcard == null ? previous : wildcard;
+  }
+
+  @SuppressWarnings("unchecked")
+  private T cast(Object value) {
+    return (T) value;
+  }
+
+  private static Object find(int[] ports, Object[] values, int port) {
+    Object any = null;
+    for (int i = 0; i < ports.length; i++) {
+      if (ports[i] == port) {
+        return values[i];
+      } else if (ports[i] == ANY_PORT) {
+        any = values[i];
+      }
+    }
+
+    return any;
+  }
+
+  private static byte lowerCase(byte b) {
+    return b >= 'A' && b <= 'Z' ? (byte) (b | 0x20) : b;
+  }
+
+  /**
+   * Returns a builder which skips invalid patterns silently.
+   */
+  public static <T> Builder<T> builder() {
+    return builder(NOPLogger.NOP_LOGGER);
+  }
+
+  /**
+   * Returns a builder which skips invalid patterns with a warning.
+   */
+  public static <T> Builder<T> builder(Logger logger) {
+    return new Builder<>(logger);
+  }
+
+  private static final class Node {
+
+    private static final int[] NO_PORTS = new int[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private final byte[] labels;
+    private final Node[] children;
+    private final int[] exactPorts;
+    private final Object[] exactValues;
+    private final int[] wildcardPorts;
+    private final Object[] wildcardValues;
+
+    private Node(byte[] labels, Node[] children, Map<Integer, Object> exact, Map<Integer, Object> wildcard) {
+      this.labels = labels;
+      this.children = children;
+      this.exactPorts = exact.isEmpty() ? NO_PORTS : exact.keySet().stream().mapToInt(Integer::intValue).toArray();
+      this.exactValues = exact.isEmpty() ? NO_VALUES : exact.values().toArray();
+      this.wildcardPorts = wildcard.isEmpty() ? NO_PORTS : wildcard.keySet().stream().mapToInt(Integer::intValue).toArray();
+      this.wildcardValues = wildcard.isEmpty() ? NO_VALUES : wildcard.values().toArray();
+    }
+
+    private Node child(byte label) {
+      int index = Arrays.binarySearch(this.labels, label);
+      return index < 0 ? null : this.children[index];
+    }
+  }
+
+  public static class Builder<T> {
+
+    private final MutableNode root = new MutableNode();
+    private final Logger logger;
+
+    private Builder(Logger logger) {
+      this.logger = logger;
+    }
+
+    /**
+     * Adds a pattern in form of "[*.]hostname[:port]", a pattern without a port matches any port.
+     * Invalid patterns are skipped.
+     */
+    public Builder<T> add(String pattern, T value) {
+      String hostname = pattern;
+      int port = ANY_PORT;
+      int portIndex = pattern.lastIndexOf(':');
+      if (portIndex != -1) {
+        hostname = pattern.substring(0, portIndex);
+        try {
+          port = Integer.parseInt(pattern.substring(portIndex + 1));
+        } catch (NumberFormatException e) {
+          return this.skip(pattern);
+        }
+
+        if (port < 0 || port > 0xFFFF) {
+          return this.skip(pattern);
+        }
+      }
+
+      boolean wildcard = hostname.startsWith("*.");
+      if (wildcard) {
+        hostname = hostname.substring(2);
+      }
+
+      if (hostname.endsWith(".")) {
+        hostname = hostname.substring(0, hostname.length() - 1);
+      }
+
+      if (hostname.isEmpty() || !hostname.chars().allMatch(c -> c > 0 && c <= 0x7F) || hostname.contains("*")) {
+        return this.skip(pattern);
+      }
+
+      MutableNode node = this.root;
+      byte[] bytes = hostname.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII);
+      for (int i = bytes.length - 1; i >= 0; i--) {
+        node = node.children.computeIfAbsent(bytes[i], b -> new MutableNode());
+      }
+
+      (wildcard ? node.wildcard : node.exact).put(port, value);
+      return this;
+    }
+
+    private Builder<T> skip(String pattern) {
+      this.logger.warn("Skipping invalid domain pattern {}, only [*.]hostname[:port] with an ASCII hostname is supported", pattern);
+      return this;
+    }
+
+    public DomainMatcher<T> build() {
+      return new DomainMatcher<>(this.root.compile());
+    }
+  }
+
+  private static final class MutableNode {
+
+    private final Map<Byte, MutableNode> children = new TreeMap<>();
+    private final Map<Integer, Object> exact = new TreeMap<>();
+    private final Map<Integer, Object> wildcard = new TreeMap<>();
+
+    private Node compile() {
+      byte[] labels = new byte[this.children.size()];
+      List<Node> compiled = new ArrayList<>(this.children.size());
+      int i = 0;
+      for (Map.Entry<Byte, MutableNode> entry : this.children.entrySet()) {
+        labels[i++] = entry.getKey();
+        compiled.add(entry.getValue().compile());
+      }
+
+      return new Node(labels, compiled.toArray(new Node[0]), this.exact, this.wildcard);
+    }
+  }
+}
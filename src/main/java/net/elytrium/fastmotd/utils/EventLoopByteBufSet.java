@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Holds one copy of a buffer per event loop.
+ * New contents are published as a whole generation, every loop refreshes its own copy lazily on the next access,
+ * reusing the already allocated memory when no write of the previous contents is in flight.
+ * An optional read-only tail is appended to every copy without being copied itself.
+ */
+public class EventLoopByteBufSet {
+
+  private final Slot[] slots;
+  private final ByteBuf tail;
+  private volatile Generation current;
+
+  public EventLoopByteBufSet(ByteBuf source) {
+    this(source, null);
+  }
+
+  /**
+   * Takes ownership of both the source and the tail.
+   */
+  public EventLoopByteBufSet(ByteBuf source, ByteBuf tail) {
+    this.tail = tail;
+    this.slots = new Slot[EventLoopRegistry.size()];
+    for (int i = 0; i < this.slots.length; i++) {
+      this.slots[i] = new Slot();
+    }
+
+    this.current = new Generation(0, source);
+  }
+
+  /**
+   * Returns a retained buffer owned by the caller. Its contents may be modified by the current event loop only.
+   */
+  public ByteBuf get() {
+    Generation generation = this.current;
+    int index = EventLoopRegistry.currentIndex();
+    if (index < 0 || index >= this.slots.length) {
+      return this.assemble(generation.source.copy());
+    }
+
+    Slot slot = this.slots[index];
+    if (slot.epoch != generation.epoch) {
+      slot.refresh(this, generation);
+    }
+
+    return slot.copy.retainedDuplicate();
+  }
+
+  private ByteBuf assemble(ByteBuf head) {
+    if (this.tail == null) {
+      return head;
+    }
+
+    return Unpooled.compositeBuffer(2).addComponents(true, head, this.tail.retainedDuplicate());
+  }
+
+  /**
+   * Swaps the generation, the previous source is released after every event loop has moved on.
+   * The published buffer must not be modified afterwards.
+   */
+  public void publish(ByteBuf source) {
+    Generation previous = this.current;
+    this.current = new Generation(previous.epoch + 1, source);
+    EventLoopRegistry.retire(previous.source);
+  }
+
+  public void release() {
+    for (int i = 0; i < this.slots.length; i++) {
+      Slot slot = this.slots[i];
+      // Each copy is owned by its event loop, so it is released there
+      EventLoopRegistry.execute(i, slot::release);
+    }
+
+    EventLoopRegistry.retire(this.current.source);
+    if (this.tail != null) {
+      EventLoopRegistry.retire(this.tail);
+    }
+  }
+
+  private record Generation(long epoch, ByteBuf source) {
+
+  }
+
+  private static class Slot {
+
+    private ByteBuf copy;
+    private long epoch = -1;
+
+    private void refresh(EventLoopByteBufSet set, Generation generation) {
+      ByteBuf source = generation.source;
+      if (this.copy == null || this.copy.refCnt() != 1) {
+        // The previous contents may still be written to some channel, let it be released after the write
+        this.release();
+        this.copy = set.assemble(source.copy());
+      } else {
+        // Generations of one set always have the same length, the tail stays untouched
+        this.copy.setBytes(0, source, source.readerIndex(), source.readableBytes());
+      }
+
+      this.epoch = generation.epoch;
+    }
+
+    private void release() {
+      if (this.copy != null) {
+        this.copy.release();
+        this.copy = null;
+      }
+
+      this.epoch = -1;
+    }
+  }
+}
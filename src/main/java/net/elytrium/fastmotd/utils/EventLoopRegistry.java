@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Numbers Velocity's worker event loops, so per-loop data can live in plain arrays,
+ * and releases retired buffers only after every loop has run past the moment they were retired.
+ */
+public final class EventLoopRegistry {
+
+  private static final FastThreadLocal<Integer> INDEX = new FastThreadLocal<>();
+  private static final Object LOCK = new Object();
+  private static volatile EventExecutor[] executors = new EventExecutor[0];
+  private static List<ReferenceCounted> retired = new ArrayList<>();
+
+  private EventLoopRegistry() {
+
+  }
+
+  public static void init(EventLoopGroup group) {
+    List<EventExecutor> loops = new ArrayList<>();
+    group.forEach(loops::add);
+
+    for (int i = 0; i < loops.size(); i++) {
+      int index = i;
+      loops.get(i).execute(() -> INDEX.set(index));
+    }
+
+    executors = loops.toArray(new EventExecutor[0]);
+  }
+
+  public static int size() {
+    return executors.length;
+  }
+
+  /**
+   * Returns the index of the current event loop, or -1 if the current thread is not a worker event loop.
+   */
+  public static int currentIndex() {
+    Integer index = INDEX.getIfExists();
+    return index == null ? -1 : index;
+  }
+
+  public static void execute(int index, Runnable task) {
+    try {
+      executors[index].execute(task);
+    } catch (RejectedExecutionException e) {
+      task.run();
+    }
+  }
+
+  /**
+   * Releases the object once every event loop has finished the work it was doing at the moment of the call.
+   * The object must already be unreachable for new readers.
+   */
+  public static void retire(ReferenceCounted object) {
+    synchronized (LOCK) {
+      retired.add(object);
+      if (retired.size() == 1) {
+        GlobalEventExecutor.INSTANCE.execute(EventLoopRegistry::reclaim);
+      }
+    }
+  }
+
+  private static void reclaim() {
+    List<ReferenceCounted> batch;
+    synchronized (LOCK) {
+      batch = retired;
+      retired = new ArrayList<>();
+    }
+
+    afterEveryLoop(() -> batch.forEach(ReferenceCounted::release));
+  }
+
+  public static void afterEveryLoop(Runnable task) {
+    EventExecutor[] loops = executors;
+    if (loops.length == 0) {
+      task.run();
+      return;
+    }
+
+    AtomicInteger remaining = new AtomicInteger(loops.length);
+    Runnable barrier = () -> {
+      if (remaining.decrementAndGet() == 0) {
+        task.run();
+      }
+    };
+
+    for (EventExecutor loop : loops) {
+      try {
+        loop.execute(barrier);
+      } catch (RejectedExecutionException e) {
+        barrier.run();
+      }
+    }
+  }
+}
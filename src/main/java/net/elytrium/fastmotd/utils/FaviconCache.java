@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Recompressed favicons keyed by SHA-256 of the source file and the compression quality.
+ * The file is a compact index followed by the images, it is read into one heap buffer on load
+ * and the images are copied out of it only when they are used. The file is not memory-mapped,
+ * as a mapped file cannot be replaced on Windows until the mapping is garbage collected.
+ * Entries that were not used by the last reload are dropped on save.
+ */
+public class FaviconCache {
+
+  private static final int MAGIC = 0x464D4643;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HASH_LENGTH = 32;
+  private static final int ENTRY_LENGTH = HASH_LENGTH + Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+  private final Path path;
+  private final Map<String, Entry> stored = new HashMap<>();
+  private final Map<String, Artifact> used = new HashMap<>();
+  private ByteBuffer buffer;
+  private boolean dirty;
+
+  private FaviconCache(Path path) {
+    this.path = path;
+  }
+
+  /**
+   * Opens the cache file, a missing or corrupted file results in an empty cache.
+   */
+  public static FaviconCache load(Path path) {
+    FaviconCache cache = new FaviconCache(path);
+    if (!Files.isRegularFile(path)) {
+      return cache;
+    }
+
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+        return cache;
+      }
+
+      int count = buffer.getInt();
+      byte[] hash = new byte[HASH_LENGTH];
+      for (int i = 0; i < count; i++) {
+        buffer.get(hash);
+        long quality = buffer.getLong();
+        int offset = buffer.getInt();
+        int length = buffer.getInt();
+        if (offset < 0 || length < 0 || (long) offset + length > buffer.capacity()) {
+          cache.stored.clear();
+          return cache;
+        }
+
+        cache.stored.put(key(hash, quality), new Entry(offset, length));
+      }
+
+      cache.buffer = buffer;
+    } catch (IOException | BufferUnderflowException e) {
+      cache.stored.clear();
+    }
+
+    return cache;
+  }
+
+  public static byte[] hash(byte[] source) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(source);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String key(byte[] hash, long quality) {
+    return HexFormat.of().formatHex(hash) + '/' + quality;
+  }
+
+  /**
+   * Returns the cached image, or null if there is no such entry.
+   */
+  public synchronized byte[] get(byte[] hash, double quality) {
+    long qualityBits = Double.doubleToLongBits(quality);
+    String key = key(hash, qualityBits);
+    Artifact artifact = this.used.get(key);
+    if (artifact != null) {
+      return artifact.data;
+    }
+
+    Entry entry = this.stored.get(key);
+    if (entry == null) {
+      return null;
+    }
+
+    byte[] data = new byte[entry.length];
+    this.buffer.get(entry.offset, data);
+    this.used.put(key, new Artifact(hash, qualityBits, data));
+    return data;
+  }
+
+  public synchronized void put(byte[] hash, double quality, byte[] data) {
+    long qualityBits = Double.doubleToLongBits(quality);
+    this.used.put(key(hash, qualityBits), new Artifact(hash, qualityBits, data));
+    this.dirty = true;
+  }
+
+  /**
+   * Rewrites the file if something was added or some of the stored entries were not used.
+   */
+  public synchronized void save() throws IOException {
+    if (!this.dirty && this.used.size() == this.stored.size()) {
+      return;
+    }
+
+    Path temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+    Files.createDirectories(this.path.toAbsolutePath().getParent());
+    try (OutputStream stream = Files.newOutputStream(temp);
+         DataOutputStream out = new DataOutputStream(stream)) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(this.used.size());
+
+      int offset = 3 * Integer.BYTES + this.used.size() * ENTRY_LENGTH;
+      for (Artifact artifact : this.used.values()) {
+        out.write(artifact.hash);
+        out.writeLong(artifact.quality);
+        out.writeInt(offset);
+        out.writeInt(artifact.data.length);
+        offset += artifact.data.length;
+      }
+
+      for (Artifact artifact : this.used.values()) {
+        out.write(artifact.data);
+      }
+    }
+
+    Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    this.dirty = false;
+  }
+
+  private record Entry(int offset, int length) {
+
+  }
+
+  private record Artifact(byte[] hash, long quality, byte[] data) {
+
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+/**
+ * Decides whether the proxy is flooded from the accepted connections counter sampled once per second.
+ * The flood starts as soon as the rate reaches the enter rate, and ends only after the rate stays below
+ * the exit rate for the exit delay, so the profile does not flap on a bursty flood. Not thread-safe.
+ */
+public class FloodDetector {
+
+  private final int enterRate;
+  private final int exitRate;
+  private final long exitDelay;
+  private boolean flood;
+  private long lastCount = -1;
+  private long lastTime;
+  private long calmSince;
+  private long rate;
+
+  public FloodDetector(int enterRate, int exitRate, int exitDelaySeconds, boolean flood) {
+    this.enterRate = enterRate;
+    this.exitRate = Math.min(exitRate, enterRate);
+    this.exitDelay = exitDelaySeconds * 1_000_000_000L;
+    this.flood = flood;
+  }
+
+  /**
+   * Returns true if the flood state has changed.
+   */
+  public boolean update(long count, long nanoTime) {
+    final long previous = this.lastCount;
+    final long elapsed = nanoTime - this.lastTime;
+    this.lastCount = count;
+    this.lastTime = nanoTime;
+    if (previous == -1 || elapsed <= 0) {
+      this.calmSince = nanoTime;
+      return false;
+    }
+
+    this.rate = (count - previous) * 1_000_000_000L / elapsed;
+    if (this.rate >= this.exitRate) {
+      this.calmSince = nanoTime;
+    }
+
+    if (!this.flood && this.rate >= this.enterRate) {
+      this.flood = true;
+      return true;
+    } else if (this.flood && nanoTime - this.calmSince >= this.exitDelay) {
+      this.flood = false;
+      return true;
+    }
+
+    return false;
+  }
+
+  public boolean isFlood() {
+    return this.flood;
+  }
+
+  /**
+   * Returns the connections per second measured by the last update.
+   */
+  public long getRate() {
+    return this.rate;
+  }
+}
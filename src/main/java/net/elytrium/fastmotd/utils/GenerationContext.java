@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import io.netty.buffer.ByteBuf;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import net.elytrium.fastmotd.FastMOTD;
+import net.elytrium.fastmotd.Settings;
+import net.elytrium.fastmotd.holder.MOTDBytesHolder;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.ComponentSerializer;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+/**
+ * Shared state of one reload. Every favicon and every string is processed once, no matter how many generators use it,
+ * and all the work is spread over the common fork-join pool.
+ */
+public class GenerationContext {
+
+  private final FastMOTD plugin;
+  private final ComponentSerializer<Component, Component, String> serializer;
+  private final FaviconCache faviconCache;
+  private final Executor executor = ForkJoinPool.commonPool();
+  private final Map<String, CompletableFuture<LoadedFavicon>> favicons = new ConcurrentHashMap<>();
+  private final Map<String, Component> descriptions = new ConcurrentHashMap<>();
+  private final Map<String, String> legacyStrings = new ConcurrentHashMap<>();
+  private final List<CompletableFuture<?>> tasks = new ArrayList<>();
+  private final List<MOTDGenerator> generators = new ArrayList<>();
+
+  public GenerationContext(FastMOTD plugin, ComponentSerializer<Component, Component, String> serializer, FaviconCache faviconCache) {
+    this.plugin = plugin;
+    this.serializer = serializer;
+    this.faviconCache = faviconCache;
+  }
+
+  public Executor getExecutor() {
+    return this.executor;
+  }
+
+  /**
+   * Schedules the generation to be awaited by {@link #join()}, should be called from the reloading thread only.
+   */
+  public void track(MOTDGenerator generator) {
+    this.generators.add(generator);
+    this.tasks.add(generator.generate(this));
+  }
+
+  public void join() {
+    CompletableFuture.allOf(this.tasks.toArray(new CompletableFuture[0])).join();
+  }
+
+  /**
+   * Disposes every tracked generator once all of their tasks are finished, used when the reload has failed.
+   */
+  public void discard() {
+    CompletableFuture.allOf(this.tasks.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+    this.generators.forEach(MOTDGenerator::dispose);
+  }
+
+  public CompletableFuture<LoadedFavicon> getFavicon(String location) {
+    return this.favicons.computeIfAbsent(location, key -> CompletableFuture.supplyAsync(() -> {
+      try {
+        String favicon = this.readFavicon(Paths.get(key));
+        return new LoadedFavicon(favicon, MOTDBytesHolder.createFaviconSegment(favicon));
+      } catch (IOException e) {
+        this.plugin.getLogger().warn("Failed to load favicon {}. Ensure that the file exists or modify config.yml", key);
+        return LoadedFavicon.EMPTY;
+      }
+    }, this.executor));
+  }
+
+  public Component getDescription(String serialized) {
+    return this.descriptions.computeIfAbsent(serialized, key -> this.serializer.deserialize(key.replace("{NL}", "\n")));
+  }
+
+  public String toLegacy(String serialized) {
+    return this.legacyStrings.computeIfAbsent(serialized,
+        key -> LegacyComponentSerializer.legacySection().serialize(this.serializer.deserialize(key)));
+  }
+
+  private String readFavicon(Path faviconLocation) throws IOException {
+    byte[] imageBytes = Files.readAllBytes(faviconLocation);
+    double quality = Settings.IMP.MAIN.PNG_QUALITY;
+
+    if (quality >= 0) {
+      byte[] hash = null;
+      if (this.faviconCache != null) {
+        hash = FaviconCache.hash(imageBytes);
+        byte[] cached = this.faviconCache.get(hash, quality);
+        if (cached != null) {
+          return "data:image/png;base64," + Base64.getEncoder().encodeToString(cached);
+        }
+      }
+
+      BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+
+      ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+      try (ImageOutputStream out = ImageIO.createImageOutputStream(outBytes)) {
+        ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(image);
+        ImageWriter writer = ImageIO.getImageWriters(type, "png").next();
+
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+          param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+          param.setCompressionQuality((float) quality);
+        }
+
+        writer.setOutput(out);
+        writer.write(null, new IIOImage(image, null, null), param);
+        writer.dispose();
+      }
+
+      imageBytes = outBytes.toByteArray();
+      outBytes.close();
+
+      if (hash != null) {
+        this.faviconCache.put(hash, quality, imageBytes);
+      }
+    }
+
+    return "data:image/png;base64," + Base64.getEncoder().encodeToString(imageBytes);
+  }
+
+  /**
+   * Releases the shared favicon segments, every holder has retained the ones it uses.
+   */
+  public void release() {
+    for (CompletableFuture<LoadedFavicon> favicon : this.favicons.values()) {
+      // Failed favicons have nothing to release, getNow would rethrow their error
+      if (!favicon.isDone() || favicon.isCompletedExceptionally()) {
+        continue;
+      }
+
+      LoadedFavicon loaded = favicon.getNow(LoadedFavicon.EMPTY);
+      if (loaded.segment() != null) {
+        loaded.segment().release();
+      }
+    }
+  }
+
+  public record LoadedFavicon(String base64, ByteBuf segment) {
+
+    public static final LoadedFavicon EMPTY = new LoadedFavicon(null, null);
+  }
+}
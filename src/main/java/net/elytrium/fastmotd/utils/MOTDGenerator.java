@@ -20,117 +20,101 @@ package net.elytrium.fastmotd.utils;
 import com.velocitypowered.api.network.ProtocolVersion;
 import com.velocitypowered.api.proxy.server.ServerPing;
 import io.netty.buffer.ByteBuf;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageTypeSpecifier;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
-import net.elytrium.fastmotd.FastMOTD;
-import net.elytrium.fastmotd.Settings;
 import net.elytrium.fastmotd.holder.MOTDHolder;
-import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.serializer.ComponentSerializer;
 
 public class MOTDGenerator {
 
-  private final FastMOTD plugin;
-  private final ComponentSerializer<Component, Component, String> serializer;
   private final String versionName;
   private final List<String> descriptions;
   private final List<String> favicons;
   private final List<String> information;
   private final int holdersAmount;
   private final MOTDHolder[] holders;
+  private final int domainSlot;
 
-  public MOTDGenerator(FastMOTD plugin, ComponentSerializer<Component, Component, String> serializer,
-                       String versionName, List<String> descriptions, List<String> favicons, List<String> information) {
-    this.plugin = plugin;
-    this.serializer = serializer;
+  public MOTDGenerator(String versionName, List<String> descriptions, List<String> favicons, List<String> information) {
+    this(versionName, descriptions, favicons, information, null);
+  }
+
+  /**
+   * The responses are counted under the domain pattern by {@link PingMetrics}, null if the generator is not routed by a domain.
+   */
+  public MOTDGenerator(String versionName, List<String> descriptions, List<String> favicons, List<String> information, String domain) {
     this.versionName = versionName;
     this.descriptions = descriptions;
     this.favicons = favicons;
     this.information = information;
     this.holdersAmount = this.descriptions.size() * Math.max(1, this.favicons.size());
     this.holders = new MOTDHolder[this.holdersAmount];
+    this.domainSlot = PingMetrics.domainSlot(domain);
   }
 
-  public void generate() {
+  /**
+   * Schedules creation of all the holders, the returned future completes when every holder is ready.
+   */
+  public CompletableFuture<Void> generate(GenerationContext context) {
+    List<String> legacyInformation = this.information.stream().map(context::toLegacy).toList();
     int faviconsSize = this.favicons.size();
 
     if (faviconsSize == 0) {
-      this.generate(0, null);
+      return this.generate(context, 0, GenerationContext.LoadedFavicon.EMPTY, legacyInformation);
     }
 
+    CompletableFuture<?>[] futures = new CompletableFuture[faviconsSize];
     for (int i = 0; i < faviconsSize; i++) {
-      String faviconLocation = this.favicons.get(i);
-      try {
-        String base64Favicon = this.getFavicon(Paths.get(faviconLocation));
-        this.generate(i, base64Favicon);
-      } catch (IOException e) {
-        this.plugin.getLogger().warn("Failed to load favicon {}. Ensure that the file exists or modify config.yml", faviconLocation);
-        this.generate(i, null);
-      }
+      int faviconIdx = i;
+      futures[i] = context.getFavicon(this.favicons.get(i))
+          .thenCompose(favicon -> this.generate(context, faviconIdx, favicon, legacyInformation));
     }
+
+    return CompletableFuture.allOf(futures);
   }
 
-  private void generate(int i, String favicon) {
-    for (int j = 0, descriptionsSize = this.descriptions.size(); j < descriptionsSize; j++) {
+  private CompletableFuture<Void> generate(GenerationContext context, int i, GenerationContext.LoadedFavicon favicon,
+                                           List<String> legacyInformation) {
+    int descriptionsSize = this.descriptions.size();
+    CompletableFuture<?>[] futures = new CompletableFuture[descriptionsSize];
+    for (int j = 0; j < descriptionsSize; j++) {
+      int holderIdx = i * descriptionsSize + j;
       String description = this.descriptions.get(j);
-      this.holders[i * descriptionsSize + j] = new MOTDHolder(this.serializer, this.versionName, description, favicon, this.information);
+      futures[j] = CompletableFuture.runAsync(() -> this.holders[holderIdx] = new MOTDHolder(this.versionName,
+          context.getDescription(description), favicon.base64(), favicon.segment(), legacyInformation), context.getExecutor());
     }
-  }
 
-  private String getFavicon(Path faviconLocation) throws IOException {
-    byte[] imageBytes;
-
-    if (Settings.IMP.MAIN.PNG_QUALITY < 0) {
-      imageBytes = Files.readAllBytes(faviconLocation);
-    } else {
-      BufferedImage image = ImageIO.read(Files.newInputStream(faviconLocation));
-      ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-      try (ImageOutputStream out = ImageIO.createImageOutputStream(outBytes)) {
-        ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(image);
-        ImageWriter writer = ImageIO.getImageWriters(type, "png").next();
-
-        ImageWriteParam param = writer.getDefaultWriteParam();
-        if (param.canWriteCompressed()) {
-          param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-          param.setCompressionQuality((float) Settings.IMP.MAIN.PNG_QUALITY);
-        }
-
-        writer.setOutput(out);
-        writer.write(null, new IIOImage(image, null, null), param);
-        writer.dispose();
-      }
+    return CompletableFuture.allOf(futures);
+  }
 
-      imageBytes = outBytes.toByteArray();
-      outBytes.close();
+  /**
+   * Returns the amount of bytes copied into the published buffers.
+   */
+  public long update(int max, int online) {
+    long copied = 0;
+    for (MOTDHolder holder : this.holders) {
+      copied += holder.replaceOnline(max, online);
     }
 
-    return "data:image/png;base64," + Base64.getEncoder().encodeToString(imageBytes);
+    return copied;
   }
 
-  public void update(int max, int online) {
-    for (MOTDHolder holder : this.holders) {
-      holder.replaceOnline(max, online);
-    }
+  public int getHolderCount() {
+    return this.holdersAmount;
   }
 
   public ByteBuf getNext(ProtocolVersion version, boolean replaceProtocol) {
+    PingMetrics.statusResponse(this.domainSlot, version);
     return this.holders[ThreadLocalRandom.current().nextInt(this.holdersAmount)].getByteBuf(version, replaceProtocol);
   }
 
+  public ByteBuf getNextLegacy(boolean beta, int protocol) {
+    PingMetrics.legacyPing(this.domainSlot);
+    return this.holders[ThreadLocalRandom.current().nextInt(this.holdersAmount)].getLegacyByteBuf(beta, protocol);
+  }
+
   public ServerPing getNextCompat(ProtocolVersion version, boolean replaceProtocol) {
+    PingMetrics.statusResponse(this.domainSlot, version);
     return this.holders[ThreadLocalRandom.current().nextInt(this.holdersAmount)].getCompatPingInfo(version, replaceProtocol);
   }
 
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+
+/**
+ * Resolves a ping to its generator, compiled once per reload.
+ * Protocols below {@link #DENSE_LIMIT} are resolved by a plain array lookup, the rest (e.g. snapshots)
+ * by a binary search over the configured intervals. Domains are matched by {@link DomainMatcher} before the protocol.
+ */
+public class MOTDRoutingTable {
+
+  private static final int DENSE_LIMIT = 4096;
+
+  private final MOTDGenerator fallback;
+  private final MOTDGenerator[] dense;
+  private final int[] starts;
+  private final int[] ends;
+  private final MOTDGenerator[] generators;
+  private final DomainMatcher<MOTDGenerator> domains;
+  private final List<MOTDGenerator> all;
+
+  private MOTDRoutingTable(Builder builder) {
+    this.fallback = builder.fallback;
+
+    int size = builder.starts.size();
+    this.starts = new int[size];
+    this.ends = new int[size];
+    this.generators = builder.generators.toArray(new MOTDGenerator[0]);
+    for (int i = 0; i < size; i++) {
+      this.starts[i] = builder.starts.get(i);
+      this.ends[i] = builder.ends.get(i);
+    }
+
+    int denseLength = 0;
+    for (int i = 0; i < size && this.starts[i] < DENSE_LIMIT; i++) {
+      denseLength = Math.max(denseLength, Math.min(this.ends[i], DENSE_LIMIT - 1) + 1);
+    }
+
+    this.dense = new MOTDGenerator[denseLength];
+    Arrays.fill(this.dense, this.fallback);
+    for (int i = 0; i < size && this.starts[i] < denseLength; i++) {
+      Arrays.fill(this.dense, Math.max(this.starts[i], 0), Math.min(this.ends[i], denseLength - 1) + 1, this.generators[i]);
+    }
+
+    this.domains = builder.domains.build();
+
+    Set<MOTDGenerator> unique = Collections.newSetFromMap(new IdentityHashMap<>());
+    unique.add(this.fallback);
+    unique.addAll(builder.generators);
+    unique.addAll(builder.domainGenerators);
+    this.all = List.copyOf(unique);
+  }
+
+  public MOTDGenerator route(int protocol, CharSequence hostname, int port) {
+    MOTDGenerator generator = this.domains.match(hostname, port);
+    return generator == null ? this.route(protocol) : generator;
+  }
+
+  public MOTDGenerator route(int protocol, ByteBuf hostname, int port) {
+    MOTDGenerator generator = this.domains.match(hostname, port);
+    return generator == null ? this.route(protocol) : generator;
+  }
+
+  private MOTDGenerator route(int protocol) {
+    if (protocol >= 0 && protocol < this.dense.length) {
+      return this.dense[protocol];
+    }
+
+    int index = Arrays.binarySearch(this.starts, protocol);
+    if (index < 0) {
+      index = -index - 2;
+    }
+
+    return index >= 0 && protocol <= this.ends[index] ? this.generators[index] : this.fallback;
+  }
+
+  /**
+   * Returns the generator of the pings not matched by any protocol range or domain.
+   */
+  public MOTDGenerator getFallback() {
+    return this.fallback;
+  }
+
+  /**
+   * Returns every distinct generator of this table, including the domain ones.
+   */
+  public List<MOTDGenerator> getGenerators() {
+    return this.all;
+  }
+
+  public static Builder builder(MOTDGenerator fallback) {
+    return builder(fallback, NOPLogger.NOP_LOGGER);
+  }
+
+  /**
+   * Returns a builder which logs the skipped domain patterns.
+   */
+  public static Builder builder(MOTDGenerator fallback, Logger logger) {
+    return new Builder(fallback, logger);
+  }
+
+  public static class Builder {
+
+    private final MOTDGenerator fallback;
+    private final List<Integer> starts = new ArrayList<>();
+    private final List<Integer> ends = new ArrayList<>();
+    private final List<MOTDGenerator> generators = new ArrayList<>();
+    private final DomainMatcher.Builder<MOTDGenerator> domains;
+    private final List<MOTDGenerator> domainGenerators = new ArrayList<>();
+
+    private Builder(MOTDGenerator fallback, Logger logger) {
+      this.fallback = fallback;
+      this.domains = DomainMatcher.builder(logger);
+    }
+
+    /**
+     * Routes the inclusive protocol interval, intervals should be added in ascending order and should not overlap.
+     */
+    public Builder route(int start, int end, MOTDGenerator generator) {
+      int last = this.starts.size() - 1;
+      if (last >= 0 && start <= this.ends.get(last)) {
+        throw new IllegalArgumentException("Protocol interval " + start + "-" + end + " overlaps the previous one");
+      }
+
+      if (last >= 0 && this.ends.get(last) == start - 1 && this.generators.get(last) == generator) {
+        this.ends.set(last, end);
+      } else {
+        this.starts.add(start);
+        this.ends.add(end);
+        this.generators.add(generator);
+      }
+
+      return this;
+    }
+
+    /**
+     * Routes the domain pattern, see {@link DomainMatcher.Builder#add(String, Object)}.
+     * The generator of a skipped pattern is still disposed along with the table.
+     */
+    public Builder domain(String pattern, MOTDGenerator generator) {
+      this.domains.add(pattern, generator);
+      this.domainGenerators.add(generator);
+      return this;
+    }
+
+    public MOTDRoutingTable build() {
+      return new MOTDRoutingTable(this);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decaying violation scores per address, or per /64 subnet for IPv6.
+ * Like in {@link ConnectionLimiter}, every score is a single long updated by CAS in an open-addressed array
+ * of [key, state] pairs: the state is the time when the score decays to zero, every violation moves it one decay
+ * interval further. A slot whose score has decayed is free for another key, so nothing is evicted explicitly.
+ * If a key does not fit into its probe sequence, its violations are not recorded.
+ */
+public class OffenderList {
+
+  private static final int PROBES = 8;
+
+  private final AtomicLongArray table;
+  private final int mask;
+  private final long origin = System.nanoTime();
+  private final long decay;
+  private final long cutoff;
+
+  /**
+   * An address is blocked after the amount of violations, one violation decays in the decay time.
+   */
+  public OffenderList(int violations, long decayMillis, int size) {
+    int capacity = HashCommon.nextPowerOfTwo(Math.max(size, PROBES));
+    this.table = new AtomicLongArray(capacity * 2);
+    this.mask = capacity - 1;
+    this.decay = Math.max(decayMillis, 1) * 1_000_000L;
+    this.cutoff = this.decay * (Math.max(violations, 1) - 1);
+  }
+
+  public void record(InetAddress address) {
+    long key = AddressKeys.key(address, 32, 64);
+    long now = System.nanoTime() - this.origin;
+    int start = (int) HashCommon.mix(key);
+    int free = -1;
+    long freeKey = 0;
+    for (int i = 0; i < PROBES; i++) {
+      int slot = ((start + i) & this.mask) << 1;
+      long current = this.table.get(slot);
+      if (current == key) {
+        this.add(slot + 1, now);
+        return;
+      }
+
+      if (free == -1 && (current == 0 || this.table.get(slot + 1) <= now)) {
+        free = slot;
+        freeKey = current;
+      }
+
+      if (current == 0) {
+        break;
+      }
+    }
+
+    // The key is looked up before a free slot is taken, so it is not spread over several slots. A lost race drops the violation
+    if (free != -1 && this.table.compareAndSet(free, freeKey, key)) {
+      this.add(free + 1, now);
+    }
+  }
+
+  /**
+   * Returns true if the violations of the address have reached the cutoff and have not decayed yet.
+   */
+  public boolean isBlocked(InetAddress address) {
+    long key = AddressKeys.key(address, 32, 64);
+    long now = System.nanoTime() - this.origin;
+    int start = (int) HashCommon.mix(key);
+    for (int i = 0; i < PROBES; i++) {
+      int slot = ((start + i) & this.mask) << 1;
+      long current = this.table.get(slot);
+      if (current == key) {
+        return this.table.get(slot + 1) - now > this.cutoff;
+      } else if (current == 0) {
+        return false;
+      }
+    }
+
+    return false;
+  }
+
+  private void add(int slot, long now) {
+    while (true) {
+      long state = this.table.get(slot);
+      if (this.table.compareAndSet(slot, state, Math.max(state, now) + this.decay)) {
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import it.unimi.dsi.fastutil.HashCommon;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+
+/**
+ * Logs the pings enabled by LOG_PINGS and LOG_IMPROPER_PINGS. Either a line is written per ping, as it always was,
+ * or the pings are only counted per source (address, or /64 for IPv6) and reason in a bounded lock-free table,
+ * which {@link #flush()} turns into one summary line per interval. Sources which do not fit into the table
+ * are counted in the totals only. The totals and the protocols are striped by {@link EventLoopRegistry} like
+ * {@link PingMetrics}, so the event loops do not share their cache lines.
+ */
+public class PingLog {
+
+  private static final int PROBES = 8;
+  private static final int TOP_SOURCES = 5;
+  private static final int TOP_PROTOCOLS = 5;
+  private static final Reason[] REASONS = Reason.values();
+  private static final ProtocolVersion[] VERSIONS = ProtocolVersion.values();
+  private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+  // Keeps the cells written by different loops out of the same cache line
+  private static final int PADDING = 16;
+  private static final int TOTALS = PADDING;
+  private static final int UNTRACKED = TOTALS + REASONS.length;
+  private static final int PROTOCOLS = UNTRACKED + 1;
+  private static final int STRIPE_LENGTH = PROTOCOLS + VERSIONS.length + PADDING;
+
+  private final Logger logger;
+  private final int capacity;
+  private volatile Table table;
+  private volatile boolean muted;
+  private long flushedAt = System.nanoTime();
+
+  /**
+   * Writes a line per ping.
+   */
+  public PingLog(Logger logger) {
+    this.logger = logger;
+    this.capacity = 0;
+  }
+
+  /**
+   * Counts the pings, {@link #flush()} should be called periodically.
+   */
+  public PingLog(Logger logger, int sources) {
+    this.logger = logger;
+    this.capacity = HashCommon.nextPowerOfTwo(Math.max(sources, PROBES));
+    this.table = new Table(this.capacity);
+  }
+
+  public void ping(SocketAddress address, ProtocolVersion version) {
+    Table current = this.table;
+    if (current != null) {
+      current.count(address, Reason.PING);
+      current.increment(PROTOCOLS + version.ordinal());
+    } else if (!this.muted) {
+      this.logger.info("{} is pinging the server with version {}", address, version);
+    }
+  }
+
+  public void legacyPing(SocketAddress address, Object version) {
+    Table current = this.table;
+    if (current != null) {
+      current.count(address, Reason.LEGACY_PING);
+    } else if (!this.muted) {
+      this.logger.info("{} is pinging the server with legacy version {}", address, version);
+    }
+  }
+
+  public void unknownProtocol(SocketAddress address) {
+    Table current = this.table;
+    if (current != null) {
+      current.count(address, Reason.UNKNOWN_PROTOCOL);
+    } else if (!this.muted) {
+      this.logger.info("Unknown protocol version detected from {}, replaced with version {}", address, ProtocolVersion.MAXIMUM_VERSION);
+    }
+  }
+
+  public void improperOrder(SocketAddress address, Object state, Object oldState, Object newState) {
+    Table current = this.table;
+    if (current != null) {
+      current.count(address, Reason.IMPROPER_ORDER);
+    } else if (!this.muted) {
+      this.logger.warn("{} has failed to ping this proxy due to improper packet order: from {} to {}->{}", address, state, oldState, newState);
+    }
+  }
+
+  /**
+   * Stops the lines written per ping, the summaries are still written.
+   */
+  public void setMuted(boolean muted) {
+    this.muted = muted;
+  }
+
+  /**
+   * Writes the summary of the pings counted since the previous call and starts counting anew.
+   * Pings counted by the event loops while the table is swapped may be missed.
+   */
+  public synchronized void flush() {
+    Table old = this.table;
+    if (old == null) {
+      return;
+    }
+
+    this.table = new Table(this.capacity);
+    long now = System.nanoTime();
+    final long seconds = Math.max((now - this.flushedAt + 500_000_000L) / 1_000_000_000L, 1);
+    this.flushedAt = now;
+
+    long total = 0;
+    for (Reason reason : REASONS) {
+      total += old.sum(TOTALS + reason.ordinal());
+    }
+
+    if (total == 0) {
+      return;
+    }
+
+    StringBuilder line = new StringBuilder("Pings in the last ").append(seconds).append("s: ");
+    line.append(old.describeTotals()).append(" from ").append(old.sources()).append(" sources");
+    long untracked = old.sum(UNTRACKED);
+    if (untracked != 0) {
+      line.append(" (").append(untracked).append(" pings from untracked sources)");
+    }
+
+    line.append(". Top sources: ").append(old.describeTopSources());
+    String protocols = old.describeProtocols();
+    if (!protocols.isEmpty()) {
+      line.append(". Protocols: ").append(protocols);
+    }
+
+    this.logger.info(line.toString());
+  }
+
+  private static String subnetLabel(byte[] bytes) {
+    StringBuilder label = new StringBuilder();
+    for (int i = 0; i < Long.BYTES; i += 2) {
+      label.append(Integer.toHexString(((bytes[i] & 0xFF) << 8) | (bytes[i + 1] & 0xFF))).append(':');
+    }
+
+    return label.append(":/64").toString();
+  }
+
+  private enum Reason {
+
+    PING("pings"),
+    LEGACY_PING("legacy pings"),
+    UNKNOWN_PROTOCOL("unknown protocols"),
+    IMPROPER_ORDER("improper pings");
+
+    private final String name;
+
+    Reason(String name) {
+      this.name = name;
+    }
+  }
+
+  private static final class Table {
+
+    private final AtomicLongArray keys;
+    private final AtomicReferenceArray<String> labels;
+    private final AtomicLongArray counts;
+    private final long[][] stripes;
+    private final int mask;
+
+    private Table(int capacity) {
+      this.keys = new AtomicLongArray(capacity);
+      this.labels = new AtomicReferenceArray<>(capacity);
+      this.counts = new AtomicLongArray(capacity * REASONS.length);
+      this.stripes = new long[EventLoopRegistry.size() + 1][STRIPE_LENGTH];
+      this.mask = capacity - 1;
+    }
+
+    private void increment(int cell) {
+      int index = EventLoopRegistry.currentIndex();
+      if (index >= 0 && index < this.stripes.length - 1) {
+        long[] stripe = this.stripes[index];
+        CELLS.setOpaque(stripe, cell, (long) CELLS.getOpaque(stripe, cell) + 1);
+      } else {
+        CELLS.getAndAdd(this.stripes[this.stripes.length - 1], cell, 1L);
+      }
+    }
+
+    private long sum(int cell) {
+      long sum = 0;
+      for (long[] stripe : this.stripes) {
+        sum += (long) CELLS.getOpaque(stripe, cell);
+      }
+
+      return sum;
+    }
+
+    private void count(SocketAddress socketAddress, Reason reason) {
+      this.increment(TOTALS + reason.ordinal());
+      if (!(socketAddress instanceof InetSocketAddress inetSocketAddress) || inetSocketAddress.getAddress() == null) {
+        this.increment(UNTRACKED);
+        return;
+      }
+
+      InetAddress address = inetSocketAddress.getAddress();
+      long key = AddressKeys.key(address, 32, 64);
+      int start = (int) HashCommon.mix(key);
+      for (int i = 0; i < PROBES; i++) {
+        int slot = (start + i) & this.mask;
+        long current = this.keys.get(slot);
+        if (current == 0 && this.keys.compareAndSet(slot, 0, key)) {
+          this.labels.set(slot, address instanceof Inet6Address ? subnetLabel(address.getAddress()) : address.getHostAddress());
+          current = key;
+        }
+
+        if (current == key) {
+          this.counts.getAndIncrement(slot * REASONS.length + reason.ordinal());
+          return;
+        }
+      }
+
+      this.increment(UNTRACKED);
+    }
+
+    private int sources() {
+      int sources = 0;
+      for (int i = 0; i < this.keys.length(); i++) {
+        if (this.keys.get(i) != 0) {
+          sources++;
+        }
+      }
+
+      return sources;
+    }
+
+    private String describeTotals() {
+      List<String> parts = new ArrayList<>();
+      for (Reason reason : REASONS) {
+        long value = this.sum(TOTALS + reason.ordinal());
+        if (value != 0) {
+          parts.add(value + " " + reason.name);
+        }
+      }
+
+      return String.join(", ", parts);
+    }
+
+    private String describeTopSources() {
+      List<Integer> slots = new ArrayList<>();
+      for (int i = 0; i < this.keys.length(); i++) {
+        if (this.keys.get(i) != 0) {
+          slots.add(i);
+        }
+      }
+
+      return slots.stream()
+          .sorted(Comparator.comparingLong(this::sourceTotal).reversed())
+          .limit(TOP_SOURCES)
+          .map(slot -> {
+            List<String> parts = new ArrayList<>();
+            for (Reason reason : REASONS) {
+              long value = this.counts.get(slot * REASONS.length + reason.ordinal());
+              if (value != 0) {
+                parts.add(reason.name + " " + value);
+              }
+            }
+
+            String label = this.labels.get(slot);
+            return (label == null ? "?" : label) + " (" + String.join(", ", parts) + ")";
+          })
+          .collect(Collectors.joining(", "));
+    }
+
+    private long sourceTotal(int slot) {
+      long total = 0;
+      for (int i = 0; i < REASONS.length; i++) {
+        total += this.counts.get(slot * REASONS.length + i);
+      }
+
+      return total;
+    }
+
+    private String describeProtocols() {
+      long[] byProtocol = new long[VERSIONS.length];
+      long total = 0;
+      for (int i = 0; i < VERSIONS.length; i++) {
+        byProtocol[i] = this.sum(PROTOCOLS + i);
+        total += byProtocol[i];
+      }
+
+      long sum = total;
+      List<Integer> ordinals = new ArrayList<>();
+      for (int i = 0; i < VERSIONS.length; i++) {
+        if (byProtocol[i] != 0) {
+          ordinals.add(i);
+        }
+      }
+
+      return ordinals.stream()
+          .sorted(Comparator.comparingLong((Integer ordinal) -> byProtocol[ordinal]).reversed())
+          .limit(TOP_PROTOCOLS)
+          .map(ordinal -> String.format(Locale.ROOT, "%d %.1f%%", VERSIONS[ordinal].getProtocol(), byProtocol[ordinal] * 100.0 / sum))
+          .collect(Collectors.joining(", "));
+    }
+  }
+}
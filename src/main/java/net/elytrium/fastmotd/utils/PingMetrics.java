@@ -0,0 +1,351 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.elytrium.fastmotd.Settings;
+
+/**
+ * Ping counters striped by {@link EventLoopRegistry}: every worker event loop is the only writer of its own stripe,
+ * so an increment is a plain load and store without any atomic instruction. Other threads (e.g. the event manager
+ * running the compat listener) share one more stripe updated atomically. Readers sum the stripes, the sums are monotonic
+ * but not a consistent cut across the counters.
+ *
+ * <p>Latencies of the sampled connections are kept in log-linear buckets of microseconds in the same stripes:
+ * values below {@link #SUB_BUCKETS} are exact, every further power of two is split into {@link #SUB_BUCKETS} buckets,
+ * so a percentile is at most 1/16 off.
+ */
+public final class PingMetrics {
+
+  /**
+   * Slot of the pings not routed by a domain.
+   */
+  public static final int NO_DOMAIN = 0;
+  public static final String NO_DOMAIN_LABEL = "";
+  /**
+   * Domains registered after all the slots are taken share the last one.
+   */
+  public static final String OTHER_DOMAINS_LABEL = "other";
+  public static final int MAX_DOMAINS = 64;
+  /**
+   * Start of a connection which is not timed.
+   */
+  public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+  private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+  private static final ProtocolVersion[] VERSIONS = ProtocolVersion.values();
+  private static final int PROTOCOLS = VERSIONS.length;
+  // Keeps the cells written by different loops out of the same cache line
+  private static final int PADDING = 16;
+  private static final int STATUS_RESPONSES = PADDING + Event.values().length;
+  private static final int PONGS = STATUS_RESPONSES + MAX_DOMAINS * PROTOCOLS;
+  private static final int LEGACY_PINGS = PONGS + PROTOCOLS;
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Up to 2^27 microseconds, longer latencies go to the last bucket
+  private static final int BUCKETS = (27 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+  // Bucket counts followed by the sum of the microseconds
+  private static final int LATENCY_LENGTH = BUCKETS + 1;
+  private static final int LATENCIES = LEGACY_PINGS + MAX_DOMAINS;
+  private static final int STRIPE_LENGTH = LATENCIES + Latency.values().length * LATENCY_LENGTH + PADDING;
+
+  private static final Map<String, Integer> DOMAIN_SLOTS = new HashMap<>();
+  private static final String[] DOMAIN_LABELS = new String[MAX_DOMAINS];
+  private static volatile long[][] stripes = { new long[STRIPE_LENGTH] };
+
+  static {
+    DOMAIN_LABELS[NO_DOMAIN] = NO_DOMAIN_LABEL;
+    DOMAIN_LABELS[MAX_DOMAINS - 1] = OTHER_DOMAINS_LABEL;
+  }
+
+  private PingMetrics() {
+
+  }
+
+  /**
+   * Allocates a stripe per event loop, should be called right after {@link EventLoopRegistry#init}.
+   */
+  public static void init(int loops) {
+    long[][] current = stripes;
+    long[][] newStripes = new long[loops + 1][];
+    for (int i = 0; i < loops; i++) {
+      newStripes[i] = new long[STRIPE_LENGTH];
+    }
+
+    newStripes[loops] = current[current.length - 1];
+    stripes = newStripes;
+  }
+
+  /**
+   * Returns the slot of the domain pattern, it stays the same across the reloads. Null means no domain.
+   */
+  public static synchronized int domainSlot(String domain) {
+    if (domain == null) {
+      return NO_DOMAIN;
+    }
+
+    Integer slot = DOMAIN_SLOTS.get(domain);
+    if (slot == null) {
+      slot = Math.min(DOMAIN_SLOTS.size() + 1, MAX_DOMAINS - 1);
+      if (slot < MAX_DOMAINS - 1) {
+        DOMAIN_LABELS[slot] = domain;
+      }
+
+      DOMAIN_SLOTS.put(domain, slot);
+    }
+
+    return slot;
+  }
+
+  public static void increment(Event event) {
+    incrementCell(PADDING + event.ordinal());
+  }
+
+  public static void statusResponse(int domainSlot, ProtocolVersion version) {
+    incrementCell(STATUS_RESPONSES + domainSlot * PROTOCOLS + version.ordinal());
+  }
+
+  public static void pong(ProtocolVersion version) {
+    incrementCell(PONGS + version.ordinal());
+  }
+
+  public static void legacyPing(int domainSlot) {
+    incrementCell(LEGACY_PINGS + domainSlot);
+  }
+
+  /**
+   * Returns the current time if the connection should be timed, {@link #NOT_SAMPLED} otherwise.
+   */
+  public static long startSample() {
+    int sampling = Settings.IMP.STATS.LATENCY_SAMPLING;
+    return sampling > 0 && ThreadLocalRandom.current().nextInt(sampling) == 0 ? System.nanoTime() : NOT_SAMPLED;
+  }
+
+  /**
+   * Records the time passed since the start returned by {@link #startSample()}, does nothing if the connection is not timed.
+   */
+  public static void recordLatency(Latency latency, long start) {
+    if (start == NOT_SAMPLED) {
+      return;
+    }
+
+    long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(System.nanoTime() - start, 0));
+    int base = LATENCIES + latency.ordinal() * LATENCY_LENGTH;
+    int cell = base + bucket(micros);
+    long[][] current = stripes;
+    int index = EventLoopRegistry.currentIndex();
+    if (index >= 0 && index < current.length - 1) {
+      long[] stripe = current[index];
+      CELLS.setOpaque(stripe, cell, (long) CELLS.getOpaque(stripe, cell) + 1);
+      CELLS.setOpaque(stripe, base + BUCKETS, (long) CELLS.getOpaque(stripe, base + BUCKETS) + micros);
+    } else {
+      CELLS.getAndAdd(current[current.length - 1], cell, 1L);
+      CELLS.getAndAdd(current[current.length - 1], base + BUCKETS, micros);
+    }
+  }
+
+  private static void incrementCell(int cell) {
+    long[][] current = stripes;
+    int index = EventLoopRegistry.currentIndex();
+    if (index >= 0 && index < current.length - 1) {
+      long[] stripe = current[index];
+      CELLS.setOpaque(stripe, cell, (long) CELLS.getOpaque(stripe, cell) + 1);
+    } else {
+      CELLS.getAndAdd(current[current.length - 1], cell, 1L);
+    }
+  }
+
+  private static int bucket(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+
+    int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+    return Math.min((shift + 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS, BUCKETS - 1);
+  }
+
+  /**
+   * Returns the highest value counted in the bucket.
+   */
+  private static long bucketLimit(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+
+    int shift = bucket / SUB_BUCKETS - 1;
+    return ((long) (bucket % SUB_BUCKETS + SUB_BUCKETS + 1) << shift) - 1;
+  }
+
+  /**
+   * Returns the current value of one counter, cheaper than {@link #collect()}.
+   */
+  public static long sum(Event event) {
+    long sum = 0;
+    for (long[] stripe : stripes) {
+      sum += (long) CELLS.getOpaque(stripe, PADDING + event.ordinal());
+    }
+
+    return sum;
+  }
+
+  public static Totals collect() {
+    long[] sums = new long[STRIPE_LENGTH];
+    for (long[] stripe : stripes) {
+      for (int i = PADDING; i < STRIPE_LENGTH - PADDING; i++) {
+        sums[i] += (long) CELLS.getOpaque(stripe, i);
+      }
+    }
+
+    String[] labels;
+    synchronized (PingMetrics.class) {
+      labels = DOMAIN_LABELS.clone();
+    }
+
+    return new Totals(sums, labels);
+  }
+
+  public enum Event {
+
+    ACCEPTED,
+    RATE_LIMITED,
+    OFFENDER_BLOCKED,
+    IMPROPER_ORDER,
+    MAINTENANCE_KICK
+  }
+
+  public enum Latency {
+
+    /**
+     * From the accepted socket to the flush of the status response.
+     */
+    STATUS_RESPONSE,
+    /**
+     * From the accepted socket to the pong, or to the close if the pong is not sent.
+     */
+    PONG
+  }
+
+  /**
+   * Summed counters, protocol versions sharing a protocol number are merged.
+   */
+  public static final class Totals {
+
+    private final long[] sums;
+    private final String[] domains;
+
+    private Totals(long[] sums, String[] domains) {
+      this.sums = sums;
+      this.domains = domains;
+    }
+
+    public long get(Event event) {
+      return this.sums[PADDING + event.ordinal()];
+    }
+
+    public long getStatusResponses() {
+      return this.sum(STATUS_RESPONSES, PONGS);
+    }
+
+    public long getPongs() {
+      return this.sum(PONGS, LEGACY_PINGS);
+    }
+
+    public long getLegacyPings() {
+      return this.sum(LEGACY_PINGS, LEGACY_PINGS + MAX_DOMAINS);
+    }
+
+    /**
+     * Returns the status responses by protocol number, then by domain pattern. Zero counters are omitted.
+     */
+    public Map<Integer, Map<String, Long>> getStatusResponsesByProtocol() {
+      Map<Integer, Map<String, Long>> result = new HashMap<>();
+      for (int domain = 0; domain < MAX_DOMAINS; domain++) {
+        for (int protocol = 0; protocol < PROTOCOLS; protocol++) {
+          long value = this.sums[STATUS_RESPONSES + domain * PROTOCOLS + protocol];
+          if (value != 0) {
+            result.computeIfAbsent(VERSIONS[protocol].getProtocol(), key -> new HashMap<>()).merge(this.domains[domain], value, Long::sum);
+          }
+        }
+      }
+
+      return result;
+    }
+
+    public Map<Integer, Long> getPongsByProtocol() {
+      Map<Integer, Long> result = new HashMap<>();
+      for (int protocol = 0; protocol < PROTOCOLS; protocol++) {
+        long value = this.sums[PONGS + protocol];
+        if (value != 0) {
+          result.merge(VERSIONS[protocol].getProtocol(), value, Long::sum);
+        }
+      }
+
+      return result;
+    }
+
+    public Map<String, Long> getLegacyPingsByDomain() {
+      Map<String, Long> result = new HashMap<>();
+      for (int domain = 0; domain < MAX_DOMAINS; domain++) {
+        long value = this.sums[LEGACY_PINGS + domain];
+        if (value != 0) {
+          result.merge(this.domains[domain], value, Long::sum);
+        }
+      }
+
+      return result;
+    }
+
+    public long getLatencyCount(Latency latency) {
+      int base = LATENCIES + latency.ordinal() * LATENCY_LENGTH;
+      return this.sum(base, base + BUCKETS);
+    }
+
+    public long getLatencySumMicros(Latency latency) {
+      return this.sums[LATENCIES + latency.ordinal() * LATENCY_LENGTH + BUCKETS];
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the percentile (0-100) in microseconds, or 0 if nothing was recorded.
+     */
+    public long getLatencyPercentileMicros(Latency latency, double percentile) {
+      int base = LATENCIES + latency.ordinal() * LATENCY_LENGTH;
+      long count = this.getLatencyCount(latency);
+      long rank = Math.max((long) Math.ceil(count * percentile / 100.0), 1);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += this.sums[base + i];
+        if (seen >= rank) {
+          return bucketLimit(i);
+        }
+      }
+
+      return 0;
+    }
+
+    private long sum(int from, int to) {
+      return Arrays.stream(this.sums, from, to).sum();
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Serves {@link PingMetrics} in the Prometheus text format on /metrics. Requests are handled on the dispatcher thread
+ * of the JDK HTTP server, they never touch the event loops.
+ */
+public class PrometheusExporter {
+
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+  private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+  private final HttpServer server;
+
+  public PrometheusExporter(String address, int port) throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+    this.server.createContext("/metrics", this::handle);
+    this.server.start();
+  }
+
+  public void stop() {
+    this.server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+
+      byte[] body = format(PingMetrics.collect()).getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+        output.write(body);
+      }
+    }
+  }
+
+  public static String format(PingMetrics.Totals totals) {
+    StringBuilder builder = new StringBuilder();
+    header(builder, "fastmotd_accepted_sockets_total", "Connections accepted by the proxy listener.");
+    builder.append("fastmotd_accepted_sockets_total ").append(totals.get(PingMetrics.Event.ACCEPTED)).append('\n');
+    header(builder, "fastmotd_rate_limited_total", "Connections closed by the rate limit.");
+    builder.append("fastmotd_rate_limited_total ").append(totals.get(PingMetrics.Event.RATE_LIMITED)).append('\n');
+    header(builder, "fastmotd_offenders_blocked_total", "Connections closed because of recent improper pings from the address.");
+    builder.append("fastmotd_offenders_blocked_total ").append(totals.get(PingMetrics.Event.OFFENDER_BLOCKED)).append('\n');
+
+    header(builder, "fastmotd_status_responses_total", "Status responses by protocol number and routed domain.");
+    totals.getStatusResponsesByProtocol().forEach((protocol, domains) -> domains.forEach((domain, value) ->
+        builder.append("fastmotd_status_responses_total{protocol=\"").append(protocol)
+            .append("\",domain=\"").append(escape(domain)).append("\"} ").append(value).append('\n')));
+    header(builder, "fastmotd_pongs_total", "Pongs by protocol number.");
+    totals.getPongsByProtocol().forEach((protocol, value) ->
+        builder.append("fastmotd_pongs_total{protocol=\"").append(protocol).append("\"} ").append(value).append('\n'));
+    header(builder, "fastmotd_legacy_pings_total", "Answered pre-1.7 pings by routed domain.");
+    for (Map.Entry<String, Long> entry : totals.getLegacyPingsByDomain().entrySet()) {
+      builder.append("fastmotd_legacy_pings_total{domain=\"").append(escape(entry.getKey())).append("\"} ").append(entry.getValue()).append('\n');
+    }
+
+    header(builder, "fastmotd_improper_order_total", "Status connections closed due to improper packet order.");
+    builder.append("fastmotd_improper_order_total ").append(totals.get(PingMetrics.Event.IMPROPER_ORDER)).append('\n');
+    header(builder, "fastmotd_maintenance_kicks_total", "Logins kicked during maintenance.");
+    builder.append("fastmotd_maintenance_kicks_total ").append(totals.get(PingMetrics.Event.MAINTENANCE_KICK)).append('\n');
+
+    latency(builder, totals, PingMetrics.Latency.STATUS_RESPONSE, "fastmotd_status_response_latency_seconds",
+        "Time from the accepted socket to the status response flush, sampled.");
+    latency(builder, totals, PingMetrics.Latency.PONG, "fastmotd_pong_latency_seconds",
+        "Time from the accepted socket to the pong or the close, sampled.");
+    return builder.toString();
+  }
+
+  private static void latency(StringBuilder builder, PingMetrics.Totals totals, PingMetrics.Latency latency, String name, String help) {
+    builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    builder.append("# TYPE ").append(name).append(" summary\n");
+    for (double quantile : QUANTILES) {
+      builder.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+          .append(seconds(totals.getLatencyPercentileMicros(latency, quantile * 100.0))).append('\n');
+    }
+
+    builder.append(name).append("_sum ").append(seconds(totals.getLatencySumMicros(latency))).append('\n');
+    builder.append(name).append("_count ").append(totals.getLatencyCount(latency)).append('\n');
+  }
+
+  private static String seconds(long micros) {
+    return Double.toString(micros / 1_000_000.0);
+  }
+
+  private static void header(StringBuilder builder, String name, String help) {
+    builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    builder.append("# TYPE ").append(name).append(" counter\n");
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Holds immutable response variants, which are shared by every event loop.
+ * A generation is published as one block of equally sized heads, the previous generation is released
+ * after every event loop has moved on and all the writes of it have completed.
+ */
+public class ProtocolByteBufSet {
+
+  private final int headLength;
+  private final ByteBuf tail;
+  private volatile ByteBuf[] current;
+
+  /**
+   * Takes ownership of both the block and the tail.
+   */
+  public ProtocolByteBufSet(ByteBuf block, int headLength, ByteBuf tail) {
+    this.headLength = headLength;
+    this.tail = tail;
+    this.current = this.split(block);
+  }
+
+  private ByteBuf[] split(ByteBuf block) {
+    ByteBuf[] variants = new ByteBuf[block.readableBytes() / this.headLength];
+    for (int i = 0; i < variants.length; i++) {
+      ByteBuf head = block.retainedSlice(block.readerIndex() + i * this.headLength, this.headLength);
+      variants[i] = this.tail == null ? head : Unpooled.compositeBuffer(2).addComponents(true, head, this.tail.retainedDuplicate());
+    }
+
+    // Variants hold their own references
+    block.release();
+    return variants;
+  }
+
+  public int size() {
+    return this.current.length;
+  }
+
+  /**
+   * Returns a retained slice owned by the caller, it must not be modified.
+   */
+  public ByteBuf get(int variant) {
+    return this.current[variant].retainedSlice();
+  }
+
+  public void publish(ByteBuf block) {
+    ByteBuf[] previous = this.current;
+    this.current = this.split(block);
+    for (ByteBuf variant : previous) {
+      EventLoopRegistry.retire(variant);
+    }
+  }
+
+  public void release() {
+    for (ByteBuf variant : this.current) {
+      EventLoopRegistry.retire(variant);
+    }
+
+    if (this.tail != null) {
+      EventLoopRegistry.retire(this.tail);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.util.AttributeKey;
+import net.elytrium.fastmotd.Settings;
+
+/**
+ * Socket options applied once a connection is known to be a ping.
+ * Options unsupported by the transport are ignored by Netty, TCP_FASTOPEN and TCP_QUICKACK need epoll.
+ */
+public class StatusSocketProfile {
+
+  private static final AttributeKey<Boolean> LISTENER_TUNED = AttributeKey.valueOf("fastmotd-listener-tuned");
+
+  private final boolean tcpNoDelay;
+  private final boolean tcpQuickAck;
+  private final boolean resetOnClose;
+
+  private StatusSocketProfile(boolean tcpNoDelay, boolean tcpQuickAck, boolean resetOnClose) {
+    this.tcpNoDelay = tcpNoDelay;
+    this.tcpQuickAck = tcpQuickAck;
+    this.resetOnClose = resetOnClose;
+  }
+
+  /**
+   * Enables TCP_FASTOPEN on the listener of the accepted channel, only the first call per listener does something.
+   * The option stays on the listener for all of its connections until the proxy restarts, reloads do not revert it.
+   */
+  public static void applyToListener(Channel channel) {
+    Channel listener = channel.parent();
+    if (!Settings.IMP.STATUS_SOCKET.ENABLED || Settings.IMP.STATUS_SOCKET.TCP_FASTOPEN <= 0 || listener == null
+        || listener.hasAttr(LISTENER_TUNED) || listener.attr(LISTENER_TUNED).setIfAbsent(Boolean.TRUE) != null) {
+      return;
+    }
+
+    listener.config().setOption(EpollChannelOption.TCP_FASTOPEN, Settings.IMP.STATUS_SOCKET.TCP_FASTOPEN);
+  }
+
+  /**
+   * Returns the options of the current settings, it has to be obtained again after every reload.
+   */
+  public static StatusSocketProfile fromSettings() {
+    boolean enabled = Settings.IMP.STATUS_SOCKET.ENABLED;
+    return new StatusSocketProfile(enabled && Settings.IMP.STATUS_SOCKET.TCP_NODELAY, enabled && Settings.IMP.STATUS_SOCKET.TCP_QUICKACK,
+        enabled && Settings.IMP.STATUS_SOCKET.RESET_ON_CLOSE);
+  }
+
+  public void applyToStatus(Channel channel) {
+    if (this.tcpNoDelay) {
+      channel.config().setOption(ChannelOption.TCP_NODELAY, true);
+    }
+
+    if (this.tcpQuickAck) {
+      channel.config().setOption(EpollChannelOption.TCP_QUICKACK, true);
+    }
+  }
+
+  /**
+   * Makes the following close send RST, so the socket does not stay in TIME_WAIT. Should be called after the last write.
+   */
+  public void resetOnClose(Channel channel) {
+    if (this.resetOnClose && channel.isActive()) {
+      channel.config().setOption(ChannelOption.SO_LINGER, 0);
+    }
+  }
+}
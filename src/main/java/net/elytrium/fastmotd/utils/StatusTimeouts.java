@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadlines of the status connections, which have to finish the ping in STATUS_TIMEOUT after the handshake.
+ * All of them share one hashed wheel timer, so a deadline costs an insertion into the wheel
+ * instead of a task scheduled on the event loop of each channel.
+ */
+public class StatusTimeouts {
+
+  private static final HashedWheelTimer TIMER =
+      new HashedWheelTimer(new DefaultThreadFactory("fastmotd-status-timeout", true), 10, TimeUnit.MILLISECONDS, 512);
+
+  /**
+   * Returns null if the status timeout (STATUS_TIMEOUT, in ms) is disabled.
+   */
+  public static Timeout schedule(TimerTask task, int timeout) {
+    return timeout > 0 ? TIMER.newTimeout(task, timeout, TimeUnit.MILLISECONDS) : null;
+  }
+
+  public static void cancel(Timeout timeout) {
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+  /**
+   * Stops the timer thread on proxy shutdown, the pending deadlines are dropped.
+   */
+  public static void stop() {
+    TIMER.stop();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2022 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.fastmotd.utils;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ConnectionLimiterTest {
+
+  private static final int CAPACITY = 8;
+
+  @Test
+  void throttledAddressStaysThrottledAfterCollidingBucketsExpire() throws InterruptedException, UnknownHostException {
+    // 10 connections per second with a burst of 5, the subnet is never limited
+    ConnectionLimiter limiter = new ConnectionLimiter(10, 5, 1_000_000_000, 1_000_000_000, CAPACITY);
+    InetAddress throttled = InetAddress.getByName("10.0.0.1");
+    int start = startSlot(throttled);
+
+    // Take the first slots of the probe sequence of the throttled address, so its bucket lands further down the sequence
+    int colliding = 0;
+    for (int i = 2; i < 255 && colliding < 3; i++) {
+      InetAddress address = InetAddress.getByName("10.0.0." + i);
+      if (startSlot(address) == start) {
+        Assertions.assertTrue(limiter.tryAcquire(address));
+        colliding++;
+      }
+    }
+
+    Assertions.assertEquals(3, colliding);
+    for (int i = 0; i < 5; i++) {
+      Assertions.assertTrue(limiter.tryAcquire(throttled));
+    }
+
+    Assertions.assertFalse(limiter.tryAcquire(throttled));
+
+    // The colliding buckets are refilled after 100ms, the throttled one regains a single token in 150ms
+    Thread.sleep(150);
+    int allowed = 0;
+    for (int i = 0; i < 5; i++) {
+      if (limiter.tryAcquire(throttled)) {
+        allowed++;
+      }
+    }
+
+    Assertions.assertTrue(allowed <= 2, "A second bucket was created for the throttled address, " + allowed + " connections were allowed");
+  }
+
+  @Test
+  void rejectedSubnetDoesNotChargeAddress() throws InterruptedException, UnknownHostException {
+    // The address bucket holds two tokens and practically never refills, the subnet one holds a single token refilled in 50ms
+    ConnectionLimiter limiter = new ConnectionLimiter(0.001, 2, 20, 1, 1024);
+    InetAddress address = InetAddress.getByName("10.0.1.1");
+    Assertions.assertTrue(limiter.tryAcquire(address));
+    for (int i = 0; i < 5; i++) {
+      Assertions.assertFalse(limiter.tryAcquire(address));
+    }
+
+    Thread.sleep(100);
+    Assertions.assertTrue(limiter.tryAcquire(address), "The connections rejected by the subnet have taken the address tokens");
+    Assertions.assertFalse(limiter.tryAcquire(address));
+  }
+
+  private static int startSlot(InetAddress address) {
+    return (int) HashCommon.mix(AddressKeys.key(address, 32, 128)) & (CAPACITY - 1);
+  }
+}